@@ -0,0 +1,115 @@
+package picocli.nativeimage.demo;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures checksum throughput across algorithms, buffer sizes and file sizes, comparing
+ * reading the whole file onto the heap (the original implementation) with {@code FileChannel}
+ * reads through a direct buffer, memory-mapped reads, and asynchronous reads with several reads in flight.
+ * <p>
+ * Besides operations per second, each benchmark reports a {@code bytes} counter: bytes hashed per second.
+ * The heap read benchmark ignores the buffer size.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CheckSumBenchmark {
+
+    @Param({"MD5", "SHA-256", "CRC32C", "XXH64"})
+    public String algorithm;
+
+    @Param({"8192", "65536", "1048576"})
+    public int bufferSize;
+
+    @Param({"4096", "1048576", "67108864"})
+    public int fileSize;
+
+    private Path file;
+    private Hasher hasher;
+    private DigestEngine channelEngine;
+    private DigestEngine mappedEngine;
+    private DigestEngine asyncEngine;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("checksum", "bench");
+        byte[] block = new byte[64 * 1024];
+        Random random = new Random(fileSize);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int written = 0; written < fileSize; written += block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, Math.min(block.length, fileSize - written));
+            }
+        }
+        hasher = Hasher.forName(algorithm);
+        channelEngine = new DigestEngine(bufferSize, DigestEngine.IoMode.CHANNEL, null);
+        mappedEngine = new DigestEngine(bufferSize, DigestEngine.IoMode.MMAP, null);
+        asyncEngine = new DigestEngine(bufferSize, DigestEngine.IoMode.ASYNC, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] heapRead(Bytes bytes) throws IOException {
+        byte[] contents = Files.readAllBytes(file);
+        hasher.update(contents);
+        bytes.bytes += contents.length;
+        return hasher.digest();
+    }
+
+    @Benchmark
+    public byte[] channelRead(Bytes bytes) throws IOException {
+        bytes.bytes += fileSize;
+        return channelEngine.digest(file, hasher);
+    }
+
+    @Benchmark
+    public byte[] mappedRead(Bytes bytes) throws IOException {
+        bytes.bytes += fileSize;
+        return mappedEngine.digest(file, hasher);
+    }
+
+    @Benchmark
+    public byte[] asyncRead(Bytes bytes) throws IOException {
+        bytes.bytes += fileSize;
+        return asyncEngine.digest(file, hasher);
+    }
+}
@@ -0,0 +1,77 @@
+package picocli.nativeimage.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares printing a digest line with {@code BigInteger} and {@code printf}, as {@code CheckSum} used to,
+ * with the table-driven {@link DigestWriter}. Both write to a stream that discards its input.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation rate ({@code gc.alloc.rate.norm}, bytes per line).
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DigestFormatBenchmark {
+
+    @Param({"4", "16", "32"})
+    public int digestLength;
+
+    private final String name = "src/main/java/picocli/nativeimage/demo/CheckSum.java";
+    private byte[] digest;
+    private PrintStream printStream;
+    private DigestWriter hexWriter;
+    private DigestWriter base64Writer;
+
+    @Setup
+    public void setUp() {
+        digest = new byte[digestLength];
+        new Random(digestLength).nextBytes(digest);
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        printStream = new PrintStream(discard);
+        hexWriter = new DigestWriter(discard, DigestWriter.Format.HEX, false);
+        base64Writer = new DigestWriter(discard, DigestWriter.Format.BASE64, false);
+    }
+
+    @Benchmark
+    public void printf() {
+        printStream.printf("%0" + (digest.length * 2) + "x  %s%n", new BigInteger(1, digest), name);
+    }
+
+    @Benchmark
+    public void hexWriter() {
+        hexWriter.write(null, digest, name);
+    }
+
+    @Benchmark
+    public void base64Writer() {
+        base64Writer.write(null, digest, name);
+    }
+}
@@ -0,0 +1,114 @@
+package picocli.nativeimage.demo;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file with several positional reads in flight on an {@link AsynchronousFileChannel},
+ * so that fast storage such as NVMe sees a queue depth above one. Each outstanding read fills its own
+ * direct buffer from a reused ring; buffers are handed to the consumer strictly in file order,
+ * and each is resubmitted for the next unread region as soon as it has been consumed.
+ * <p>
+ * Instances are not thread-safe: use one reader per thread.
+ * </p>
+ */
+final class AsyncReader {
+    static final int DEFAULT_QUEUE_DEPTH = 8;
+
+    private final ByteBuffer[] ring;
+
+    AsyncReader(int queueDepth, int bufferSize) {
+        ring = new ByteBuffer[queueDepth];
+        for (int i = 0; i < queueDepth; i++) {
+            ring[i] = ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+
+    /** Reads the file up to the size it had when opened and passes its contents to the sink, in order. */
+    void transfer(Path path, PipelinedReader.Sink sink) throws IOException {
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Future<Integer>> pending = new ArrayList<>(Collections.nCopies(ring.length, null));
+            long[] positions = new long[ring.length];
+            long next = 0;
+            for (int i = 0; i < ring.length && next < size; i++) {
+                positions[i] = next;
+                pending.set(i, submit(channel, ring[i], next, size));
+                next += ring[i].capacity();
+            }
+            try {
+                for (int slot = 0; pending.get(slot) != null; slot = (slot + 1) % ring.length) {
+                    ByteBuffer buffer = ring[slot];
+                    while (await(pending.get(slot)) >= 0 && buffer.hasRemaining()) { // a short read: read the rest of the region
+                        pending.set(slot, channel.read(buffer, positions[slot] + buffer.position()));
+                    }
+                    pending.set(slot, null);
+                    if (buffer.hasRemaining()) {
+                        throw new EOFException(path + " was truncated while it was read");
+                    }
+                    buffer.flip();
+                    sink.accept(buffer);
+                    if (next < size) {
+                        positions[slot] = next;
+                        pending.set(slot, submit(channel, buffer, next, size));
+                        next += buffer.capacity();
+                    }
+                }
+            } finally {
+                drain(pending); // the channel must not write into a buffer after it is reused
+            }
+        }
+    }
+
+    private static Future<Integer> submit(AsynchronousFileChannel channel, ByteBuffer buffer, long position, long size) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), size - position));
+        return channel.read(buffer, position);
+    }
+
+    private static int await(Future<Integer> read) throws IOException {
+        try {
+            return read.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static void drain(List<Future<Integer>> pending) {
+        for (Future<Integer> read : pending) {
+            if (read == null) {
+                continue;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    read.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ignored) {
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
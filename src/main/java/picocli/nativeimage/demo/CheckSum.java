@@ -2,29 +2,133 @@ package picocli.nativeimage.demo;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
 import picocli.jansi.graalvm.AnsiConsole;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.math.BigInteger;
-import java.nio.file.Files;
-import java.security.MessageDigest;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 @Command(name = "checksum", mixinStandardHelpOptions = true, showAtFileInUsageHelp = true,
         version = "checksum 4.0",
-        description = "Prints the checksum (MD5 by default) of a file to STDOUT.")
+        description = "Prints the checksum (MD5 by default) of one or more files to STDOUT.")
 class CheckSum implements Callable<Integer> {
+    /** The file argument {@code -}: only this instance means the standard input stream, never a file named {@code -} found otherwise. */
+    static final File STDIN = new File("-");
 
-    @Parameters(index = "0", description = "The file whose checksum to calculate, or '-' to read from the standard input stream.")
-    private File file;
+    @Parameters(arity = "0..*", converter = InputConverter.class, description = {"The files whose checksum to calculate, or '-' to read from the standard input stream.",
+            "With --check, the manifests with checksums to verify. With --duplicates, the directories to search."})
+    private List<File> files = new ArrayList<>();
 
-    @Option(names = {"-a", "--algorithm"}, description = "MD5, SHA-1, SHA-256, ...")
-    private String algorithm = "MD5";
+    @Option(names = {"-a", "--algorithm"}, split = ",", paramLabel = "<algorithm>", defaultValue = "MD5",
+            description = {"MD5, SHA-1, SHA-256, ..., or one of the fast checksums CRC32, CRC32C, ADLER32, XXH64.", "Specify a comma-separated list to compute several digests in a single pass."})
+    private List<String> algorithms;
+
+    @Option(names = {"-j", "--threads"}, description = "Number of files to hash in parallel. Default: number of processors.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--io", paramLabel = "<mode>", description = {"How files are read: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}.",
+            "AUTO memory-maps large files and reads small files through a buffer; ASYNC keeps several reads in flight, for fast storage such as NVMe."})
+    private DigestEngine.IoMode ioMode = DigestEngine.IoMode.AUTO;
+
+    @Option(names = "--buffer-size", description = "Read buffer size in bytes. Default: ${DEFAULT-VALUE}.")
+    private int bufferSize = DigestEngine.DEFAULT_BUFFER_SIZE;
+
+    @Option(names = "--queue-depth", description = "Number of reads in flight per file with --io=ASYNC. Default: ${DEFAULT-VALUE}.")
+    private int queueDepth = AsyncReader.DEFAULT_QUEUE_DEPTH;
+
+    @Option(names = "--fail-fast", description = "Stop at the first file that cannot be read or, with --check, does not match.")
+    private boolean failFast;
+
+    @Option(names = "--tree", description = "Compute a Merkle tree hash over fixed-size chunks of each file, hashing the chunks in parallel.")
+    private boolean tree;
+
+    @Option(names = "--chunk-size", description = "Chunk size in bytes for --tree. Default: ${DEFAULT-VALUE}.")
+    private int chunkSize = TreeHash.DEFAULT_CHUNK_SIZE;
+
+    @Option(names = {"-c", "--check"}, description = {"Read checksums from the files and verify them, in parallel.",
+            "Each line must name its file, as the output for several files or with --names does."})
+    private boolean check;
+
+    @Option(names = "--names", description = "Print the path after each checksum, even for a single file, so the output can be verified with --check.")
+    private boolean printNames;
+
+    @Option(names = "--cache", paramLabel = "<cacheFile>",
+            description = "Cache digests in this file, keyed on path, size, modification time and inode. Unchanged files are not read again.")
+    private File cacheFile;
+
+    @Option(names = "--incremental", description = {"For files that only grow, such as logs: save the digest state to a sidecar file <file>"
+            + IncrementalHash.SUFFIX + " and on the next run hash only the bytes appended since.",
+            "The whole file is hashed again if its inode changed, it got shorter, or a sample of the hashed part changed. "
+                    + "Supports CRC32C, XXH64 and SHA-256."})
+    private boolean incremental;
+
+    @Option(names = "--stats", description = {"Print the bytes, time spent reading and digesting, and throughput of each file, and totals, to STDERR.",
+            "Also prints cache hit and miss counts, with --incremental the files resumed, with --duplicates the number of files read, "
+                    + "and with --dedup the chunk index runs spilled to disk."})
+    private boolean printStats;
+
+    @Option(names = "--stats-format", paramLabel = "<format>", description = "Format of --stats: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}.")
+    private Stats.Format statsFormat = Stats.Format.TEXT;
+
+    @Option(names = "--output-format", paramLabel = "<format>",
+            description = "How checksums are printed: ${COMPLETION-CANDIDATES}. RAW writes only the binary digests. Default: ${DEFAULT-VALUE}.")
+    private DigestWriter.Format outputFormat = DigestWriter.Format.HEX;
+
+    @Option(names = "--tee", description = "Copy the input to STDOUT while hashing it, and print the checksum to STDERR. Requires a single file or '-'.")
+    private boolean tee;
+
+    @Option(names = "--stdin-paths", description = {"Keep running and read the paths of the files to hash from STDIN, printing a line per file as soon as it is hashed.",
+            "Paths are read as UTF-8. Buffers and digests are reused across files."})
+    private boolean stdinPaths;
+
+    @Option(names = {"-z", "--null"}, description = "With --stdin-paths, paths are separated by NUL characters instead of newlines.")
+    private boolean nullSeparated;
+
+    @Option(names = "--duplicates", description = {"Find files with identical contents in the given directories and print them in groups, separated by blank lines.",
+            "Files are compared by size first, then by their first and last bytes, and only the remaining candidates are fully hashed."})
+    private boolean duplicates;
+
+    @Option(names = "--dedup", description = {"Split the files into content-defined chunks and print the number of chunks and bytes of each file, "
+            + "in total and unique across all files, and the estimated deduplication ratio.",
+            "Chunks are identified by their digest with the first algorithm."})
+    private boolean dedup;
+
+    @Option(names = "--average-chunk-size", description = "Average chunk size in bytes for --dedup, a power of two. Default: ${DEFAULT-VALUE}.")
+    private int averageChunkSize = ContentChunker.DEFAULT_AVERAGE_SIZE;
+
+    @Spec
+    private CommandSpec spec;
+
+    private ForkJoinPool forkJoinPool;
+    private DigestCache cache;
+    private Stats stats;
+    private IncrementalHash incrementalHash;
+    private final Map<String, TreeHash> trees = new ConcurrentHashMap<>();
+    private final ThreadLocal<DigestEngine> engines = ThreadLocal.withInitial(
+            () -> new DigestEngine(bufferSize, ioMode, queueDepth, forkJoinPool));
+    private final ThreadLocal<Map<String, Hasher>> hashers = ThreadLocal.withInitial(HashMap::new);
 
     public static void main(String... args) {
         int exitCode;
@@ -36,22 +140,358 @@ class CheckSum implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception { // your business logic goes here...
-        byte[] fileContents = "-".equals(file.getName())
-                ? readFully(System.in) : Files.readAllBytes(file.toPath());
-        byte[] digest = MessageDigest.getInstance(algorithm).digest(fileContents);
-        System.out.printf("%0" + (digest.length * 2) + "x%n", new BigInteger(1, digest));
-        return 0;
+        for (String algorithm : algorithms) {
+            Hasher.forName(algorithm); // fail before starting any work if an algorithm is unknown
+        }
+        if (stdinPaths ? !files.isEmpty() || check || tee : files.isEmpty()) {
+            throw new ParameterException(spec.commandLine(), stdinPaths
+                    ? "--stdin-paths reads paths from STDIN and cannot be combined with files, --check or --tee"
+                    : "Missing required parameter: '<files>'");
+        }
+        if (chunkSize <= 0) {
+            throw new ParameterException(spec.commandLine(), "--chunk-size must be positive but was " + chunkSize);
+        }
+        if (bufferSize <= 0 || queueDepth <= 0) {
+            throw new ParameterException(spec.commandLine(), "--buffer-size and --queue-depth must be positive");
+        }
+        if (duplicates && (check || tee || stdinPaths)) {
+            throw new ParameterException(spec.commandLine(), "--duplicates cannot be combined with --check, --tee or --stdin-paths");
+        }
+        if (outputFormat == DigestWriter.Format.RAW && duplicates) {
+            throw new ParameterException(spec.commandLine(), "--output-format=RAW cannot be combined with --duplicates");
+        }
+        if (dedup && (check || tee || duplicates || tree)) {
+            throw new ParameterException(spec.commandLine(), "--dedup cannot be combined with --check, --tee, --duplicates or --tree");
+        }
+        if (averageChunkSize < 64 || Integer.bitCount(averageChunkSize) != 1) {
+            throw new ParameterException(spec.commandLine(), "--average-chunk-size must be a power of two of at least 64 but was " + averageChunkSize);
+        }
+        if (incremental) {
+            if (tree || tee || check || duplicates || dedup || cacheFile != null) {
+                throw new ParameterException(spec.commandLine(),
+                        "--incremental cannot be combined with --tree, --tee, --check, --duplicates, --dedup or --cache");
+            }
+            for (String algorithm : algorithms) {
+                if (IncrementalHash.forName(algorithm.toUpperCase(Locale.ROOT)) == null) {
+                    throw new ParameterException(spec.commandLine(), "--incremental does not support " + algorithm
+                            + ", only " + String.join(", ", IncrementalHash.algorithms()));
+                }
+            }
+            incrementalHash = new IncrementalHash();
+        }
+        if (tee && (files.size() != 1 || check || tree)) {
+            throw new ParameterException(spec.commandLine(), "--tee requires a single file and cannot be combined with --check or --tree");
+        }
+        forkJoinPool = new ForkJoinPool(Math.max(1, threads));
+        stats = printStats ? new Stats(statsFormat, System.err) : null;
+        cache = cacheFile == null ? null : DigestCache.open(cacheFile.toPath());
+        try (OrderedExecutor executor = new OrderedExecutor(Math.max(1, threads), failFast)) {
+            return check ? check(executor) : duplicates ? printDuplicates(executor) : dedup ? printDedup(executor) : print(executor);
+        } finally {
+            forkJoinPool.shutdownNow();
+            if (cache != null) {
+                cache.close();
+            }
+            printStats();
+        }
+    }
+
+    private void printStats() {
+        if (stats == null) {
+            return;
+        }
+        if (incrementalHash != null) {
+            stats.counters("incremental", new String[] {"resumed", "rehashed", "skipped bytes"}, new long[] {
+                    incrementalHash.resumed.get(), incrementalHash.rehashed.get(), incrementalHash.skippedBytes.get()});
+        }
+        if (cache != null) {
+            stats.counters("cache", new String[] {"hits", "misses"}, new long[] {cache.hits(), cache.misses()});
+        }
+        stats.total();
     }
 
-    private byte[] readFully(InputStream is) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[1024];
-        while ((nRead = is.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
+    private int print(OrderedExecutor executor) throws InterruptedException {
+        List<String> labels = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            labels.add(tree ? TreeHash.label(algorithm, chunkSize) : algorithm.toUpperCase(Locale.ROOT));
         }
+        boolean printLabels = tree || labels.size() > 1;
+        boolean printNames = this.printNames || files.size() > 1 || stdinPaths;
+        // with --stdin-paths a line must appear as soon as its file is hashed
+        DigestWriter out = new DigestWriter(tee ? System.err : System.out, outputFormat, stdinPaths || tee);
+        Iterable<File> inputs = stdinPaths ? new PathList(new InputStreamReader(System.in, StandardCharsets.UTF_8), nullSeparated) : files;
+        boolean success;
+        try {
+            success = executor.run(inputs, file -> digest(file, file == STDIN, labels), new OrderedExecutor.Listener<File, byte[][]>() {
+                @Override
+                public boolean completed(File file, byte[][] digests) {
+                    for (int i = 0; i < digests.length; i++) {
+                        out.write(printLabels ? labels.get(i) : null, digests[i], printNames ? file.getPath() : null);
+                    }
+                    return true;
+                }
 
-        buffer.flush();
-        return buffer.toByteArray();
+                @Override
+                public void failed(File file, Throwable cause) {
+                    out.flush();
+                    System.err.printf("checksum: %s: %s%n", file, describe(cause));
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            out.flush();
+            System.err.printf("checksum: %s%n", describe(ex.getCause()));
+            return 1;
+        }
+        out.flush();
+        return success ? 0 : 1;
+    }
+
+    private int printDuplicates(OrderedExecutor executor) throws Exception {
+        List<String> label = Collections.singletonList(
+                tree ? TreeHash.label(algorithms.get(0), chunkSize) : algorithms.get(0).toUpperCase(Locale.ROOT));
+        List<Path> roots = new ArrayList<>();
+        for (File file : files) {
+            roots.add(file.toPath());
+        }
+        DuplicateFinder finder = new DuplicateFinder(executor, path -> digest(path.toFile(), false, label)[0],
+                (path, cause) -> System.err.printf("checksum: %s: %s%n", path, describe(cause)));
+        List<DuplicateFinder.Group> groups = finder.find(roots);
+        DigestWriter out = new DigestWriter(System.out, outputFormat, false);
+        long redundant = 0;
+        for (int i = 0; i < groups.size(); i++) {
+            DuplicateFinder.Group group = groups.get(i);
+            if (i > 0) {
+                out.blankLine();
+            }
+            for (Path path : group.paths) {
+                out.write(null, group.digest, path.toString());
+            }
+            redundant += group.size * (group.paths.size() - 1);
+        }
+        out.flush();
+        if (stats != null) {
+            stats.counters("duplicates", new String[] {"files", "sampled", "fully hashed", "groups", "redundant bytes"},
+                    new long[] {finder.scanned, finder.sampled, finder.hashed, groups.size(), redundant});
+        }
+        return finder.failed ? 1 : 0;
+    }
+
+    private int printDedup(OrderedExecutor executor) throws Exception {
+        String algorithm = algorithms.get(0);
+        Iterable<File> inputs = stdinPaths ? new PathList(new InputStreamReader(System.in, StandardCharsets.UTF_8), nullSeparated) : files;
+        boolean success;
+        try (ChunkIndex index = new ChunkIndex()) {
+            try {
+                success = executor.run(inputs, file -> {
+                    ChunkIndex.Batch batch = index.new Batch();
+                    ContentChunker chunker = new ContentChunker(hasher(algorithm), averageChunkSize, batch);
+                    DigestEngine engine = engines.get();
+                    Stats.Timings timings = stats == null ? null : new Stats.Timings();
+                    long start = stats == null ? 0 : System.nanoTime();
+                    engine.setTimings(timings);
+                    try {
+                        if (file == STDIN) {
+                            engine.digestStdIn(null, chunker);
+                        } else {
+                            engine.digest(file.toPath(), chunker);
+                        }
+                    } finally {
+                        engine.setTimings(null);
+                    }
+                    batch.flush();
+                    if (stats != null) {
+                        stats.file(file, timings, System.nanoTime() - start);
+                    }
+                    return new long[] {batch.chunks, batch.bytes};
+                }, new OrderedExecutor.Listener<File, long[]>() {
+                    @Override
+                    public boolean completed(File file, long[] counts) {
+                        System.out.printf("%12d %14d  %s%n", counts[0], counts[1], file);
+                        return true;
+                    }
+
+                    @Override
+                    public void failed(File file, Throwable cause) {
+                        System.err.printf("checksum: %s: %s%n", file, describe(cause));
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                System.err.printf("checksum: %s%n", describe(ex.getCause()));
+                return 1;
+            }
+            ChunkIndex.Totals unique = index.unique();
+            System.out.printf("%12d %14d  total%n", index.chunks(), index.bytes());
+            System.out.printf("%12d %14d  unique%n", unique.chunks, unique.bytes);
+            System.out.printf(Locale.ROOT, "dedup ratio: %.2f%n", unique.bytes == 0 ? 1.0 : (double) index.bytes() / unique.bytes);
+            if (stats != null) {
+                stats.counters("dedup", new String[] {"spilled runs"}, new long[] {index.runs()});
+            }
+        }
+        return success ? 0 : 1;
+    }
+
+    private int check(OrderedExecutor executor) throws Exception {
+        int[] mismatches = new int[1];
+        int[] unreadable = new int[1];
+        String defaultLabel = algorithms.get(0).toUpperCase(Locale.ROOT);
+        boolean success;
+        boolean withoutEntries;
+        try (Manifest manifest = new Manifest(files, warning -> System.err.printf("checksum: %s%n", warning))) {
+            success = executor.run(manifest, entry -> {
+                String label = entry.label == null ? defaultLabel : entry.label;
+                byte[] digest = digest(entry.file, false, Collections.singletonList(label))[0];
+                return DigestWriter.hex(digest);
+            }, new OrderedExecutor.Listener<Manifest.Entry, String>() {
+                @Override
+                public boolean completed(Manifest.Entry entry, String actual) {
+                    boolean ok = entry.expected.equals(actual);
+                    System.out.printf("%s: %s%n", entry.file, ok ? "OK" : "FAILED");
+                    if (!ok) {
+                        mismatches[0]++;
+                    }
+                    return ok;
+                }
+
+                @Override
+                public void failed(Manifest.Entry entry, Throwable cause) {
+                    System.err.printf("checksum: %s: %s%n", entry.file, describe(cause));
+                    System.out.printf("%s: FAILED open or read%n", entry.file);
+                    unreadable[0]++;
+                }
+            });
+            withoutEntries = manifest.foundManifestWithoutEntries();
+        } catch (UncheckedIOException ex) {
+            System.err.printf("checksum: %s%n", describe(ex.getCause()));
+            return 1;
+        }
+        if (unreadable[0] > 0) {
+            System.err.printf("checksum: WARNING: %d listed file%s could not be read%n", unreadable[0], unreadable[0] == 1 ? "" : "s");
+        }
+        if (mismatches[0] > 0) {
+            System.err.printf("checksum: WARNING: %d computed checksum%s did NOT match%n", mismatches[0], mismatches[0] == 1 ? "" : "s");
+        }
+        return success && !withoutEntries ? 0 : 1;
+    }
+
+    /**
+     * Returns the digests of the file for the specified labels: algorithm names or tree hash labels.
+     * Digests not found in the cache are computed with a single read of the file.
+     * If {@code stdIn}, the standard input stream is read instead of the file.
+     */
+    private byte[][] digest(File file, boolean stdIn, List<String> labels) throws Exception {
+        if (cache == null || stdIn || tee) {
+            return compute(file, stdIn, labels);
+        }
+        Path path = file.toPath();
+        BasicFileAttributes attributes = DigestCache.attributes(path);
+        byte[][] result = new byte[labels.size()][];
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < labels.size(); i++) {
+            result[i] = cache.get(labels.get(i), path, attributes);
+            if (result[i] == null) {
+                missing.add(labels.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            byte[][] computed = compute(file, false, missing);
+            for (int i = 0, m = 0; i < labels.size(); i++) {
+                if (result[i] == null) {
+                    result[i] = computed[m++];
+                    cache.put(labels.get(i), path, attributes, result[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    private byte[][] compute(File file, boolean stdIn, List<String> labels) throws Exception {
+        if (stats == null) {
+            return compute(file, stdIn, labels, null);
+        }
+        Stats.Timings timings = new Stats.Timings();
+        long start = System.nanoTime();
+        byte[][] result = compute(file, stdIn, labels, timings);
+        stats.file(file, timings, System.nanoTime() - start);
+        return result;
+    }
+
+    private byte[][] compute(File file, boolean stdIn, List<String> labels, Stats.Timings timings) throws Exception {
+        if (incrementalHash != null) {
+            if (stdIn) {
+                throw new IOException("--incremental requires a file, not the standard input stream");
+            }
+            DigestEngine engine = engines.get();
+            engine.setTimings(timings);
+            try {
+                return incrementalHash.digest(file.toPath(), labels, engine);
+            } finally {
+                engine.setTimings(null);
+            }
+        }
+        byte[][] result = new byte[labels.size()][];
+        List<Hasher> plain = new ArrayList<>();
+        for (int i = 0; i < labels.size(); i++) {
+            String label = labels.get(i);
+            if (label.startsWith("tree:")) {
+                if (stdIn) {
+                    throw new IOException("--tree requires a file, not the standard input stream");
+                }
+                long start = timings == null ? 0 : System.nanoTime();
+                result[i] = trees.computeIfAbsent(label, l -> TreeHash.fromLabel(l, forkJoinPool)).digest(file.toPath());
+                if (timings != null) { // chunks are read and hashed on several threads, so the time is not split
+                    timings.bytes += file.length();
+                    timings.digestNanos += System.nanoTime() - start;
+                }
+            } else {
+                plain.add(hasher(label));
+            }
+        }
+        if (!plain.isEmpty()) {
+            DigestEngine engine = engines.get();
+            Hasher[] array = plain.toArray(new Hasher[0]);
+            WritableByteChannel teeChannel = tee ? Channels.newChannel(System.out) : null;
+            engine.setTimings(timings);
+            byte[][] digests;
+            try {
+                digests = stdIn ? engine.digestStdIn(teeChannel, array) : engine.digest(file.toPath(), teeChannel, array);
+            } finally {
+                engine.setTimings(null);
+            }
+            if (tee) {
+                System.out.flush();
+            }
+            for (int i = 0, p = 0; i < result.length; i++) {
+                if (result[i] == null) {
+                    result[i] = digests[p++];
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns this thread's {@code Hasher} for the specified algorithm. */
+    private Hasher hasher(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Hasher> map = hashers.get();
+        Hasher result = map.get(algorithm);
+        if (result == null) {
+            result = Hasher.forName(algorithm);
+            map.put(algorithm, result);
+        }
+        return result;
+    }
+
+    private static String describe(Throwable cause) {
+        if (cause instanceof NoSuchFileException) {
+            return "No such file or directory";
+        }
+        return cause.getMessage() == null ? cause.toString() : cause.getMessage();
+    }
+
+    /** Converts the argument {@code -} to {@link #STDIN} while the command line is parsed. */
+    static final class InputConverter implements CommandLine.ITypeConverter<File> {
+        @Override
+        public File convert(String value) {
+            return "-".equals(value) ? STDIN : new File(value);
+        }
     }
 }
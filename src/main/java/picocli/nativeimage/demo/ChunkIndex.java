@@ -0,0 +1,313 @@
+package picocli.nativeimage.demo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts the distinct chunks among all chunks added, in a bounded amount of memory.
+ * Chunks are identified by the first 128 bits of their digest.
+ * <p>
+ * Distinct fingerprints are kept in an open-addressing hash table of primitive arrays. When the table holds
+ * {@code maxEntries} fingerprints, they are sorted and written to a temporary run file, and the table is cleared.
+ * {@link #unique()} merges the runs to count the distinct chunks. The run files are deleted on {@link #close()}.
+ * </p>
+ * <p>
+ * This class is thread-safe. Threads that add many chunks should add them through a {@link Batch}.
+ * </p>
+ */
+final class ChunkIndex implements Closeable {
+    static final int DEFAULT_MAX_ENTRIES = 1 << 19;
+    private static final int BATCH_SIZE = 1024;
+
+    static final class Totals {
+        final long chunks;
+        final long bytes;
+
+        Totals(long chunks, long bytes) {
+            this.chunks = chunks;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int maxEntries;
+    private final int mask;
+    private final long[] high;
+    private final long[] low;
+    private final int[] lengths;
+    private int size;
+    private long tableBytes;
+    private long chunks;
+    private long bytes;
+    private final List<Path> runs = new ArrayList<>();
+
+    ChunkIndex() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /** @param maxEntries the number of distinct fingerprints to hold in memory before spilling them to disk */
+    ChunkIndex(int maxEntries) {
+        this.maxEntries = maxEntries;
+        int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1; // load factor at most 0.5
+        this.mask = capacity - 1;
+        this.high = new long[capacity];
+        this.low = new long[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    /** Adds a chunk with the specified digest and length. */
+    synchronized void add(byte[] digest, int length) throws IOException {
+        insert(fingerprint(digest, 0), fingerprint(digest, 8), length);
+    }
+
+    private synchronized void addAll(long[] highs, long[] lows, int[] lengths, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            insert(highs[i], lows[i], lengths[i]);
+        }
+    }
+
+    private void insert(long h, long l, int length) throws IOException {
+        chunks++;
+        bytes += length;
+        long mixed = (h ^ l) * 0x9E3779B97F4A7C15L;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (lengths[slot] != 0) {
+            if (high[slot] == h && low[slot] == l) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        high[slot] = h;
+        low[slot] = l;
+        lengths[slot] = length;
+        tableBytes += length;
+        if (++size >= maxEntries) {
+            spill();
+        }
+    }
+
+    /** The number of chunks added. */
+    synchronized long chunks() {
+        return chunks;
+    }
+
+    /** The total length of the chunks added. */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /** The number of runs written to disk so far. */
+    synchronized int runs() {
+        return runs.size();
+    }
+
+    /** Returns the number and total length of the distinct chunks added so far. */
+    synchronized Totals unique() throws IOException {
+        if (runs.isEmpty()) {
+            return new Totals(size, tableBytes);
+        }
+        if (size > 0) {
+            spill();
+        }
+        PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), (a, b) -> compare(a.high, a.low, b.high, b.low));
+        try {
+            for (Path path : runs) {
+                Run run = new Run(path);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            long distinct = 0;
+            long distinctBytes = 0;
+            long lastHigh = 0;
+            long lastLow = 0;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                if (distinct == 0 || run.high != lastHigh || run.low != lastLow) {
+                    distinct++;
+                    distinctBytes += run.length;
+                    lastHigh = run.high;
+                    lastLow = run.low;
+                }
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            return new Totals(distinct, distinctBytes);
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+        }
+    }
+
+    /** Writes the fingerprints in the table to a new run file, sorted, and clears the table. */
+    private void spill() throws IOException {
+        int n = 0;
+        for (int i = 0; i <= mask; i++) {
+            if (lengths[i] != 0) {
+                high[n] = high[i];
+                low[n] = low[i];
+                lengths[n++] = lengths[i];
+            }
+        }
+        sort(0, n - 1);
+        Path path = Files.createTempFile("checksum-chunks", ".run");
+        runs.add(path);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+            for (int i = 0; i < n; i++) {
+                out.writeLong(high[i]);
+                out.writeLong(low[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+        Arrays.fill(lengths, 0);
+        size = 0;
+        tableBytes = 0;
+    }
+
+    private void sort(int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            long pivotHigh = high[mid];
+            long pivotLow = low[mid];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (compare(high[i], low[i], pivotHigh, pivotLow) < 0) {
+                    i++;
+                }
+                while (compare(high[j], low[j], pivotHigh, pivotLow) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j - from < to - i) { // recurse into the smaller part to bound the stack depth
+                sort(from, j);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long h = high[i];
+        high[i] = high[j];
+        high[j] = h;
+        long l = low[i];
+        low[i] = low[j];
+        low[j] = l;
+        int length = lengths[i];
+        lengths[i] = lengths[j];
+        lengths[j] = length;
+    }
+
+    private static int compare(long h1, long l1, long h2, long l2) {
+        int result = Long.compare(h1, h2);
+        return result != 0 ? result : Long.compare(l1, l2);
+    }
+
+    /** Returns the 8 bytes of the digest at the specified offset as a long, padding short digests with zeros. */
+    private static long fingerprint(byte[] digest, int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            result = (result << 8) | (i < digest.length ? digest[i] & 0xFF : 0);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Path path : runs) {
+            Files.deleteIfExists(path);
+        }
+        runs.clear();
+    }
+
+    /** Reads a sorted run file one record at a time. */
+    private static final class Run implements Closeable {
+        private final DataInputStream in;
+        long high;
+        long low;
+        int length;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+        }
+
+        boolean next() throws IOException {
+            try {
+                high = in.readLong();
+            } catch (EOFException ex) {
+                return false;
+            }
+            low = in.readLong();
+            length = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // read only
+            }
+        }
+    }
+
+    /**
+     * Collects the chunks of one thread and adds them to the index in batches, to keep lock contention low.
+     * Call {@link #flush()} when done.
+     */
+    final class Batch implements ContentChunker.Listener {
+        private final long[] highs = new long[BATCH_SIZE];
+        private final long[] lows = new long[BATCH_SIZE];
+        private final int[] batchLengths = new int[BATCH_SIZE];
+        private int count;
+        /** The number of chunks added through this batch. */
+        long chunks;
+        /** The total length of the chunks added through this batch. */
+        long bytes;
+
+        @Override
+        public void chunk(byte[] digest, int length) {
+            highs[count] = fingerprint(digest, 0);
+            lows[count] = fingerprint(digest, 8);
+            batchLengths[count++] = length;
+            chunks++;
+            bytes += length;
+            if (count == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            try {
+                addAll(highs, lows, batchLengths, count);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            count = 0;
+        }
+    }
+}
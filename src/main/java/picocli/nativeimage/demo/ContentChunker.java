@@ -0,0 +1,145 @@
+package picocli.nativeimage.demo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a stream into content-defined chunks with the FastCDC algorithm. A Gear rolling hash declares
+ * a chunk boundary where its top bits are all zero, so inserting or removing bytes only changes the chunks
+ * around the edit, and identical content in different files produces identical chunks.
+ * <p>
+ * Chunks are between a quarter of and eight times the average size. Bytes before the minimum size are
+ * skipped without hashing, and normalized chunking uses a stricter mask before the average size and a
+ * looser one after it, which keeps chunk sizes close to the average.
+ * </p>
+ * <p>
+ * Each chunk is hashed with the specified hasher and passed to the {@link Listener} with its length.
+ * The chunker is itself a {@code Hasher}, so {@link DigestEngine} can feed it with the usual reads;
+ * its digest is the number of chunks, as a big-endian long. Instances are not thread-safe.
+ * </p>
+ */
+final class ContentChunker implements Hasher {
+    static final int DEFAULT_AVERAGE_SIZE = 8192;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long seed = 0; // SplitMix64, so the table and therefore the chunk boundaries never change
+        for (int i = 0; i < GEAR.length; i++) {
+            long z = seed += 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    interface Listener {
+        void chunk(byte[] digest, int length);
+    }
+
+    private final Hasher hasher;
+    private final Listener listener;
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    private long hash;
+    private int length;
+    private long count;
+
+    /**
+     * @param hasher      hashes each chunk
+     * @param averageSize the target average chunk size, a power of two of at least 64
+     * @param listener    notified of each chunk, in order
+     */
+    ContentChunker(Hasher hasher, int averageSize, Listener listener) {
+        if (averageSize < 64 || Integer.bitCount(averageSize) != 1) {
+            throw new IllegalArgumentException("Average chunk size must be a power of two of at least 64 but was " + averageSize);
+        }
+        this.hasher = hasher;
+        this.listener = listener;
+        this.minSize = averageSize / 4;
+        this.averageSize = averageSize;
+        this.maxSize = averageSize * 8;
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.strictMask = -1L << (64 - (bits + 2));
+        this.looseMask = -1L << (64 - (bits - 2));
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int pos = start;
+        while (pos < limit) {
+            if (length < minSize) {
+                int skip = Math.min(minSize - length, limit - pos);
+                pos += skip;
+                length += skip;
+                continue;
+            }
+            int end = Math.min(limit, pos + (maxSize - length));
+            long h = hash;
+            int n = length;
+            boolean boundary = false;
+            while (pos < end) {
+                h = (h << 1) + GEAR[buffer.get(pos++) & 0xFF];
+                n++;
+                if ((h & (n < averageSize ? strictMask : looseMask)) == 0) {
+                    boundary = true;
+                    break;
+                }
+            }
+            hash = h;
+            length = n;
+            if (boundary || length == maxSize) {
+                hasher.update(slice(buffer, start, pos));
+                endChunk();
+                start = pos;
+            }
+        }
+        if (start < limit) {
+            hasher.update(slice(buffer, start, limit));
+        }
+        buffer.position(limit);
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        update(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /** Ends the last chunk, if any, and returns the number of chunks. Resets this chunker. */
+    @Override
+    public byte[] digest() {
+        if (length > 0) {
+            endChunk();
+        }
+        byte[] result = ByteBuffer.allocate(8).putLong(count).array();
+        reset();
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        hasher.reset();
+        hash = 0;
+        length = 0;
+        count = 0;
+    }
+
+    private void endChunk() {
+        listener.chunk(hasher.digest(), length);
+        count++;
+        hash = 0;
+        length = 0;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+        ByteBuffer result = buffer.duplicate();
+        result.limit(to);
+        result.position(from);
+        return result;
+    }
+}
@@ -0,0 +1,286 @@
+package picocli.nativeimage.demo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of digests, keyed on file identity: algorithm, canonical path, size,
+ * modification time and file key (inode). A file whose identity has not changed is not read again.
+ * <p>
+ * The cache is an append-only log of CRC-protected records. It is loaded under a shared lock,
+ * and new records are appended under an exclusive lock when the cache is closed, so several processes
+ * can use the same cache file. The lock is taken on a separate file, {@code <cache>.lock}, which is never
+ * replaced. A torn or corrupt tail is discarded. When the log holds many more records than live entries,
+ * it is compacted while the exclusive lock is held: the live records are written to a temporary file,
+ * which is then moved over the log atomically, so a crash never loses the cache.
+ * </p>
+ * <p>
+ * Files modified very recently are not cached: a later change within the same timestamp tick
+ * would otherwise go unnoticed.
+ * </p>
+ */
+final class DigestCache implements Closeable {
+    static final String LOCK_SUFFIX = ".lock";
+
+    private static final long RACY_WINDOW_MILLIS = 2000;
+    private static final int MIN_RECORDS_TO_COMPACT = 1024;
+
+    private final Path cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> added = new ConcurrentLinkedQueue<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Entry {
+        final String algorithm;
+        final String path;
+        final long size;
+        final long modified;
+        final String fileKey;
+        final byte[] digest;
+
+        Entry(String algorithm, String path, long size, long modified, String fileKey, byte[] digest) {
+            this.algorithm = algorithm;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        String key() {
+            return key(algorithm, path);
+        }
+
+        static String key(String algorithm, String path) {
+            return algorithm + '\0' + path;
+        }
+
+        boolean matches(long size, long modified, String fileKey) {
+            return this.size == size && this.modified == modified && this.fileKey.equals(fileKey);
+        }
+    }
+
+    private DigestCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /** Opens the specified cache file, creating it if it does not exist yet. */
+    @SuppressWarnings("try")
+    static DigestCache open(Path cacheFile) throws IOException {
+        DigestCache result = new DigestCache(cacheFile);
+        try (FileChannel lock = openLock(cacheFile);
+             FileLock ignored = lock.lock(0, Long.MAX_VALUE, true);
+             FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            result.load(channel, false);
+        }
+        return result;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the cached digest of the specified file, or {@code null} if the file is not in the cache
+     * or has changed since its digest was stored.
+     */
+    byte[] get(String algorithm, Path path, BasicFileAttributes attributes) throws IOException {
+        Entry entry = entries.get(Entry.key(algorithm, canonical(path)));
+        if (entry != null && entry.matches(attributes.size(), modified(attributes), fileKey(attributes))) {
+            hits.incrementAndGet();
+            return entry.digest.clone();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the digest of the specified file. The attributes must have been read
+     * before the file contents were hashed.
+     */
+    void put(String algorithm, Path path, BasicFileAttributes attributes, byte[] digest) throws IOException {
+        long modified = modified(attributes);
+        if (TimeUnit.NANOSECONDS.toMillis(modified) > System.currentTimeMillis() - RACY_WINDOW_MILLIS) {
+            return;
+        }
+        Entry entry = new Entry(algorithm, canonical(path), attributes.size(), modified, fileKey(attributes), digest.clone());
+        entries.put(entry.key(), entry);
+        added.add(entry);
+    }
+
+    /** Appends the new entries to the cache file, compacting it if it contains many stale records. */
+    @Override
+    @SuppressWarnings("try")
+    public void close() throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        try (FileChannel lock = openLock(cacheFile);
+             FileLock ignored = lock.lock()) {
+            Map<String, Entry> mine = new ConcurrentHashMap<>();
+            for (Entry entry : added) {
+                mine.put(entry.key(), entry);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            boolean compact;
+            try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                entries.clear();
+                int records = load(channel, true) + mine.size(); // pick up entries written by other processes
+                entries.putAll(mine);
+
+                compact = records >= MIN_RECORDS_TO_COMPACT && records > 2 * entries.size();
+                for (Entry entry : compact ? entries.values() : mine.values()) {
+                    writeRecord(entry, bytes);
+                }
+                if (!compact) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                    long position = channel.size();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                }
+            }
+            if (compact) {
+                replace(bytes.toByteArray());
+            }
+            added.clear();
+        }
+    }
+
+    /** Writes the compacted log to a temporary file in the same directory, and moves it over the log. */
+    private void replace(byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static Path lockFile(Path cacheFile) {
+        return cacheFile.resolveSibling(cacheFile.getFileName() + LOCK_SUFFIX);
+    }
+
+    private static FileChannel openLock(Path cacheFile) throws IOException {
+        return FileChannel.open(lockFile(cacheFile), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads all valid records into {@link #entries} and returns the number of records read.
+     * If {@code exclusive}, a torn or corrupt tail left by a crashed writer is truncated.
+     */
+    private int load(FileChannel channel, boolean exclusive) throws IOException {
+        long size = channel.size();
+        long valid = 0;
+        int records = 0;
+        CRC32 crc = new CRC32();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+        while (size - valid >= 8) {
+            int length = in.readInt();
+            if (length < 0 || length > size - valid - 8) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != in.readInt()) {
+                break;
+            }
+            Entry entry = readEntry(payload);
+            entries.put(entry.key(), entry);
+            valid += 8 + length;
+            records++;
+        }
+        if (valid < size && exclusive) {
+            channel.truncate(valid);
+        }
+        return records;
+    }
+
+    private static Entry readEntry(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String algorithm = in.readUTF();
+        String path = in.readUTF();
+        long size = in.readLong();
+        long modified = in.readLong();
+        String fileKey = in.readUTF();
+        byte[] digest = new byte[in.readUnsignedShort()];
+        in.readFully(digest);
+        return new Entry(algorithm, path, size, modified, fileKey, digest);
+    }
+
+    private static void writeRecord(Entry entry, ByteArrayOutputStream target) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeUTF(entry.algorithm);
+        out.writeUTF(entry.path);
+        out.writeLong(entry.size);
+        out.writeLong(entry.modified);
+        out.writeUTF(entry.fileKey);
+        out.writeShort(entry.digest.length);
+        out.write(entry.digest);
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        byte[] bytes = payload.toByteArray();
+        crc.update(bytes, 0, bytes.length);
+        DataOutputStream record = new DataOutputStream(target);
+        record.writeInt(bytes.length);
+        record.write(bytes);
+        record.writeInt((int) crc.getValue());
+        record.flush();
+    }
+
+    private static String canonical(Path path) throws IOException {
+        return path.toRealPath().toString();
+    }
+
+    private static long modified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key == null ? "" : key.toString();
+    }
+
+    static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+}
@@ -0,0 +1,326 @@
+package picocli.nativeimage.demo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Streams input into one or more {@link Hasher}s without ever holding the whole input in memory.
+ * Small files are read through a single reused direct buffer; large regular files are fed
+ * to the hashers in memory-mapped windows. Alternatively, files are read with an {@link AsyncReader}
+ * that keeps several reads in flight. The standard input stream is read on a separate
+ * thread through a {@link PipelinedReader}, so reading overlaps with hashing.
+ * Optionally the input is copied to a "tee" channel while it is hashed.
+ * The input is read only once, however many digests are computed.
+ * <p>
+ * If {@linkplain #setTimings(Stats.Timings) timings} are set, the time spent reading and the time spent
+ * digesting are measured separately. Mapped windows are then {@linkplain MappedByteBuffer#load() loaded}
+ * before they are hashed, so that page faults count as reading rather than digesting.
+ * </p>
+ * <p>
+ * Instances are not thread-safe: use one engine per thread.
+ * </p>
+ */
+final class DigestEngine {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** Files at least this large are memory-mapped instead of read. */
+    static final long MAP_THRESHOLD = 4L * 1024 * 1024;
+
+    /** Size of each mapped region; bounds the address space in use at any time. */
+    static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    /** How regular files are read. */
+    enum IoMode {
+        /** Map files of at least {@link #MAP_THRESHOLD} bytes, read smaller files through the buffer. */
+        AUTO,
+        /** Always read through the buffer. */
+        CHANNEL,
+        /** Always map. */
+        MMAP,
+        /** Always read with several asynchronous positional reads in flight, through a ring of buffers. */
+        ASYNC
+    }
+
+    private final ByteBuffer buffer;
+    private final IoMode ioMode;
+    private final int queueDepth;
+    private final ExecutorService updater;
+    private PipelinedReader pipeline;
+    private AsyncReader asyncReader;
+    private Stats.Timings timings;
+
+    DigestEngine() {
+        this(DEFAULT_BUFFER_SIZE, IoMode.AUTO, null);
+    }
+
+    /**
+     * @param bufferSize the size of the direct read buffer
+     * @param ioMode     how regular files are read
+     * @param updater    if not {@code null}, the executor used to update several hashers from
+     *                   a mapped window in parallel
+     */
+    DigestEngine(int bufferSize, IoMode ioMode, ExecutorService updater) {
+        this(bufferSize, ioMode, AsyncReader.DEFAULT_QUEUE_DEPTH, updater);
+    }
+
+    /**
+     * @param bufferSize the size of the direct read buffer, and of each buffer of the {@link IoMode#ASYNC} ring
+     * @param ioMode     how regular files are read
+     * @param queueDepth the number of reads in flight with {@link IoMode#ASYNC}
+     * @param updater    if not {@code null}, the executor used to update several hashers from
+     *                   a mapped window in parallel
+     */
+    DigestEngine(int bufferSize, IoMode ioMode, int queueDepth, ExecutorService updater) {
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.ioMode = ioMode;
+        this.queueDepth = queueDepth;
+        this.updater = updater;
+    }
+
+    /** Sets the timings to add the bytes read and the time spent reading and digesting to, or {@code null} to stop measuring. */
+    void setTimings(Stats.Timings timings) {
+        this.timings = timings;
+    }
+
+    /** Returns the digest of the specified file. The hasher is reset first. */
+    byte[] digest(Path path, Hasher hasher) throws IOException {
+        return digest(path, new Hasher[] {hasher})[0];
+    }
+
+    /** Returns the digests of the specified file, in the order of the specified hashers, reading the file once. */
+    byte[][] digest(Path path, Hasher... hashers) throws IOException {
+        return digest(path, null, hashers);
+    }
+
+    /**
+     * Returns the digests of the specified file, in the order of the specified hashers, reading the file once.
+     * If {@code tee} is not {@code null}, the file contents are also written to it.
+     */
+    byte[][] digest(Path path, WritableByteChannel tee, Hasher... hashers) throws IOException {
+        reset(hashers);
+        if (ioMode == IoMode.ASYNC && tee == null) {
+            if (asyncReader == null) {
+                asyncReader = new AsyncReader(queueDepth, buffer.capacity());
+            }
+            transfer(sink -> asyncReader.transfer(path, sink), null, hashers);
+            return finish(hashers);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (tee != null) {
+                return digestPipelined(channel, tee, hashers);
+            }
+            long size = channel.size();
+            if (ioMode == IoMode.MMAP || (ioMode == IoMode.AUTO && size >= MAP_THRESHOLD)) {
+                updateMapped(channel, 0, size, hashers);
+            } else {
+                update(channel, hashers);
+            }
+        }
+        return finish(hashers);
+    }
+
+    /**
+     * Updates the hashers, without resetting them, with the bytes of the file from the specified position
+     * up to the size of the file when it is opened, and returns that size.
+     * Bytes appended while the file is read are not hashed.
+     */
+    long update(Path path, long position, Hasher... hashers) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long length = size - position;
+            if (length > 0) {
+                if (ioMode == IoMode.MMAP || (ioMode == IoMode.AUTO && length >= MAP_THRESHOLD)) {
+                    updateMapped(channel, position, length, hashers);
+                } else {
+                    channel.position(position);
+                    update(channel, length, hashers);
+                }
+            }
+            return size;
+        }
+    }
+
+    /** Returns the digest of all remaining bytes in the specified stream. The hasher is reset first. */
+    byte[] digest(ReadableByteChannel channel, Hasher hasher) throws IOException {
+        return digest(channel, new Hasher[] {hasher})[0];
+    }
+
+    /** Returns the digests of all remaining bytes in the specified stream, in the order of the specified hashers. */
+    byte[][] digest(ReadableByteChannel channel, Hasher... hashers) throws IOException {
+        reset(hashers);
+        update(channel, hashers);
+        return finish(hashers);
+    }
+
+    /**
+     * Returns the digests of the standard input stream, reading and hashing on separate threads.
+     * If {@code tee} is not {@code null}, the input is also written to it.
+     */
+    byte[][] digestStdIn(WritableByteChannel tee, Hasher... hashers) throws IOException {
+        return digestPipelined(Channels.newChannel(System.in), tee, hashers);
+    }
+
+    /** Returns the digests of all remaining bytes in the stream, reading and hashing on separate threads. */
+    byte[][] digestPipelined(ReadableByteChannel channel, WritableByteChannel tee, Hasher... hashers) throws IOException {
+        reset(hashers);
+        if (pipeline == null) {
+            pipeline = new PipelinedReader();
+        }
+        transfer(sink -> pipeline.transfer(channel, sink), tee, hashers);
+        return finish(hashers);
+    }
+
+    private interface Transfer {
+        void run(PipelinedReader.Sink sink) throws IOException;
+    }
+
+    /** Updates the hashers with, and copies to the tee, the buffers that a reader on another thread passes to the sink. */
+    private void transfer(Transfer transfer, WritableByteChannel tee, Hasher[] hashers) throws IOException {
+        Stats.Timings timings = this.timings;
+        long start = timings == null ? 0 : System.nanoTime();
+        long[] busy = new long[1];
+        transfer.run(filled -> {
+            long begin = timings == null ? 0 : System.nanoTime();
+            int length = filled.remaining();
+            for (Hasher hasher : hashers) {
+                filled.mark();
+                hasher.update(filled);
+                filled.reset();
+            }
+            if (tee != null) {
+                while (filled.hasRemaining()) {
+                    tee.write(filled);
+                }
+            }
+            if (timings != null) {
+                busy[0] += System.nanoTime() - begin;
+                timings.bytes += length;
+            }
+        });
+        if (timings != null) { // the time not spent hashing was spent waiting for reads
+            timings.digestNanos += busy[0];
+            timings.readNanos += System.nanoTime() - start - busy[0];
+        }
+    }
+
+    private void update(ReadableByteChannel channel, Hasher[] hashers) throws IOException {
+        update(channel, Long.MAX_VALUE, hashers);
+    }
+
+    /** Updates the hashers with at most {@code length} bytes from the channel. */
+    private void update(ReadableByteChannel channel, long length, Hasher[] hashers) throws IOException {
+        Stats.Timings timings = this.timings;
+        long time = timings == null ? 0 : System.nanoTime();
+        for (long remaining = length; remaining > 0; ) {
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            int read = channel.read(buffer);
+            if (read == -1) {
+                break;
+            }
+            remaining -= read;
+            long readTime = timings == null ? 0 : System.nanoTime();
+            buffer.flip();
+            for (Hasher hasher : hashers) {
+                buffer.mark();
+                hasher.update(buffer);
+                buffer.reset();
+            }
+            buffer.clear();
+            if (timings != null) {
+                long now = System.nanoTime();
+                timings.bytes += read;
+                timings.readNanos += readTime - time;
+                timings.digestNanos += now - readTime;
+                time = now;
+            }
+        }
+        if (timings != null) {
+            timings.readNanos += System.nanoTime() - time;
+        }
+    }
+
+    private void updateMapped(FileChannel channel, long position, long length, Hasher[] hashers) throws IOException {
+        long end = position + length;
+        for (long pos = position; pos < end; pos += MAP_WINDOW) {
+            long start = timings == null ? 0 : System.nanoTime();
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, end - pos));
+            long loaded = 0;
+            if (timings != null) {
+                window.load();
+                loaded = System.nanoTime();
+                timings.readNanos += loaded - start;
+                timings.bytes += window.remaining();
+            }
+            if (hashers.length > 1 && updater != null) {
+                updateInParallel(window, hashers);
+            } else {
+                for (Hasher hasher : hashers) {
+                    hasher.update(window.duplicate());
+                }
+            }
+            if (timings != null) {
+                timings.digestNanos += System.nanoTime() - loaded;
+            }
+        }
+    }
+
+    /** Each hasher consumes its own view of the window on its own thread; the pages are read from disk once. */
+    private void updateInParallel(ByteBuffer window, Hasher[] hashers) throws IOException {
+        List<Callable<Void>> updates = new ArrayList<>(hashers.length);
+        for (Hasher hasher : hashers) {
+            ByteBuffer view = window.duplicate();
+            updates.add(() -> {
+                hasher.update(view);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : updater.invokeAll(updates)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while updating digests", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /** Fills the remaining bytes of the buffer from the channel, starting at the position, or throws if the file ends first. */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("File was truncated while it was read");
+            }
+            position += read;
+        }
+    }
+
+    private static void reset(Hasher[] hashers) {
+        for (Hasher hasher : hashers) {
+            hasher.reset();
+        }
+    }
+
+    private static byte[][] finish(Hasher[] hashers) {
+        byte[][] result = new byte[hashers.length][];
+        for (int i = 0; i < hashers.length; i++) {
+            result[i] = hashers[i].digest();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+package picocli.nativeimage.demo;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes digest lines of the form {@code [label:]digest[  name]} without allocating per line:
+ * digests are encoded with lookup tables straight into a reused byte buffer, and the buffer
+ * is written to the underlying stream in batches. With {@link Format#RAW}, only the digest bytes are written.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+final class DigestWriter implements Flushable {
+    enum Format { HEX, BASE64, RAW }
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final Format format;
+    private final boolean flushEachLine;
+    private final byte[] buffer;
+    private int count;
+
+    /**
+     * @param out           the stream to write to
+     * @param format        how digests are encoded
+     * @param flushEachLine whether to write every line to the stream immediately, rather than in batches
+     */
+    DigestWriter(OutputStream out, Format format, boolean flushEachLine) {
+        this(out, format, flushEachLine, DEFAULT_BUFFER_SIZE);
+    }
+
+    DigestWriter(OutputStream out, Format format, boolean flushEachLine, int bufferSize) {
+        this.out = out;
+        this.format = format;
+        this.flushEachLine = flushEachLine;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /** Writes a line with the digest, preceded by the label and a colon, and followed by two spaces and the name, if not {@code null}. */
+    void write(String label, byte[] digest, String name) {
+        if (format == Format.RAW) {
+            for (byte b : digest) {
+                put(b);
+            }
+        } else {
+            if (label != null) {
+                put(label);
+                put((byte) ':');
+            }
+            if (format == Format.HEX) {
+                putHex(digest);
+            } else {
+                putBase64(digest);
+            }
+            if (name != null) {
+                put((byte) ' ');
+                put((byte) ' ');
+                put(name);
+            }
+            newLine();
+        }
+        if (flushEachLine) {
+            flush();
+        }
+    }
+
+    /** Writes an empty line, unless the format is {@link Format#RAW}. */
+    void blankLine() {
+        if (format != Format.RAW) {
+            newLine();
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.write(buffer, 0, count);
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        count = 0;
+    }
+
+    /** Returns the digest in lower-case hex. */
+    static String hex(byte[] digest) {
+        char[] result = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            result[2 * i] = (char) HEX[(digest[i] >>> 4) & 0xF];
+            result[2 * i + 1] = (char) HEX[digest[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    private void putHex(byte[] digest) {
+        for (byte b : digest) {
+            put(HEX[(b >>> 4) & 0xF]);
+            put(HEX[b & 0xF]);
+        }
+    }
+
+    private void putBase64(byte[] digest) {
+        int i = 0;
+        for (; i + 3 <= digest.length; i += 3) {
+            int bits = (digest[i] & 0xFF) << 16 | (digest[i + 1] & 0xFF) << 8 | (digest[i + 2] & 0xFF);
+            put(BASE64[bits >>> 18]);
+            put(BASE64[(bits >>> 12) & 0x3F]);
+            put(BASE64[(bits >>> 6) & 0x3F]);
+            put(BASE64[bits & 0x3F]);
+        }
+        int remaining = digest.length - i;
+        if (remaining > 0) {
+            int bits = (digest[i] & 0xFF) << 16 | (remaining == 2 ? (digest[i + 1] & 0xFF) << 8 : 0);
+            put(BASE64[bits >>> 18]);
+            put(BASE64[(bits >>> 12) & 0x3F]);
+            put(remaining == 2 ? BASE64[(bits >>> 6) & 0x3F] : (byte) '=');
+            put((byte) '=');
+        }
+    }
+
+    private void newLine() {
+        for (byte b : LINE_SEPARATOR) {
+            put(b);
+        }
+    }
+
+    /** Writes ASCII text byte by byte; other text is encoded in UTF-8, the charset {@link Manifest} reads. */
+    private void put(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                for (byte b : text.substring(i).getBytes(StandardCharsets.UTF_8)) {
+                    put(b);
+                }
+                return;
+            }
+            put((byte) c);
+        }
+    }
+
+    private void put(byte b) {
+        if (count == buffer.length) {
+            try {
+                out.write(buffer, 0, count);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            count = 0;
+        }
+        buffer[count++] = b;
+    }
+}
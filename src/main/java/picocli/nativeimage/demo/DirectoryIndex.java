@@ -0,0 +1,396 @@
+package picocli.nativeimage.demo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A persistent index of a directory tree, stored in columns: for each entry, the row of its parent directory,
+ * the first row and number of its children, its size, modification time, type flags and name.
+ * Rows are in breadth-first order, and the children of each directory are consecutive rows, sorted by name,
+ * so a directory is found by binary searches along its path.
+ * <p>
+ * An index is read through a memory-mapped buffer: queries read the columns in place, and allocate only for
+ * the entries they return. {@link #build} writes a new index, reusing the rows of a previous one for
+ * every directory whose modification time has not changed, so that only changed directories are read again.
+ * As a consequence, changes to the size or modification time of files are not noticed until their directory
+ * changes. Symbolic links are indexed but not followed. An index file holds at most 2 GB, some 40 million entries.
+ * </p>
+ * <p>
+ * This class is thread-safe, but it must not be used while or after it is {@linkplain #close() closed}.
+ * </p>
+ */
+final class DirectoryIndex implements Closeable {
+    private static final int MAGIC = 0x464C4958; // "FLIX"
+    private static final int VERSION = 1;
+    private static final byte DIRECTORY = 1;
+    private static final byte REGULAR_FILE = 2;
+    private static final byte SYMBOLIC_LINK = 4;
+    /** The bytes per row in all columns but the names: parent, first child, child count, size, time, flags and name offset. */
+    private static final int ROW_BYTES = 4 + 4 + 4 + 8 + 8 + 1 + 4;
+
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+    private final String root;
+    private ByteBuffer buffer;
+    private final int rows;
+    private final int parents;
+    private final int firstChildren;
+    private final int childCounts;
+    private final int sizes;
+    private final int times;
+    private final int flags;
+    private final int nameOffsets;
+    private final int names;
+
+    private DirectoryIndex(String root, ByteBuffer buffer, int rows) {
+        this.root = root;
+        this.buffer = buffer;
+        this.rows = rows;
+        this.parents = buffer.position();
+        this.firstChildren = parents + 4 * rows;
+        this.childCounts = firstChildren + 4 * rows;
+        this.sizes = childCounts + 4 * rows;
+        this.times = sizes + 8 * rows;
+        this.flags = times + 8 * rows;
+        this.nameOffsets = flags + rows;
+        this.names = nameOffsets + 4 * (rows + 1);
+    }
+
+    /** Maps the index file into memory. */
+    static DirectoryIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index is larger than 2 GB");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a filelist index");
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported index version");
+            }
+            int rows = buffer.getInt();
+            int rootLength = buffer.getInt();
+            if (rows < 1 || rootLength < 0 || rootLength > buffer.remaining()
+                    || (long) buffer.position() + rootLength + (long) ROW_BYTES * rows + 4 > buffer.limit()) {
+                throw new IOException("Corrupt index");
+            }
+            byte[] root = new byte[rootLength];
+            buffer.get(root);
+            DirectoryIndex index = new DirectoryIndex(new String(root, StandardCharsets.UTF_8), buffer, rows);
+            if ((long) index.names + index.nameOffset(rows) != buffer.limit()) {
+                throw new IOException("Corrupt index");
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Releases the index: afterwards, queries fail with an exception. The file is unmapped when the buffer is
+     * garbage collected, as the JDK offers no supported way to unmap it earlier.
+     */
+    @Override
+    public void close() {
+        buffer = CLOSED;
+    }
+
+    /** The absolute, normalized path of the indexed tree. */
+    String root() {
+        return root;
+    }
+
+    /** Whether the file is in the indexed tree, that is, the root or below it, whether or not it is in the index. */
+    boolean covers(File file) {
+        return file.toPath().toAbsolutePath().normalize().startsWith(Paths.get(root));
+    }
+
+    /** Returns the row of the file, or -1 if it is not in the index. */
+    int find(File file) {
+        if (!covers(file)) {
+            return -1;
+        }
+        Path rootPath = Paths.get(root);
+        int row = 0;
+        for (Path name : rootPath.relativize(file.toPath().toAbsolutePath().normalize())) {
+            if (row < 0 || name.toString().isEmpty()) {
+                break;
+            }
+            row = find(row, name.toString());
+        }
+        return row;
+    }
+
+    /** Returns the row of the entry with the specified name in the directory at the row, or -1. */
+    int find(int directory, String name) {
+        int low = firstChild(directory);
+        int high = low + childCount(directory) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = name(mid).compareTo(name);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Whether the row is a directory whose entries are in the index, rather than a file or a link. */
+    boolean directory(int row) {
+        return flags(row) == DIRECTORY;
+    }
+
+    /**
+     * Returns the entries of the directory at the row that pass the filter, or all entries if it is {@code null},
+     * or only its subdirectories. Attributes are tested first, from the columns, without allocating.
+     */
+    Entry[] children(int row, File dir, Filter filter, boolean subdirectories) {
+        List<Entry> result = new ArrayList<>();
+        for (int child = firstChild(row), end = child + childCount(row); child < end; child++) {
+            if (subdirectories ? directory(child) : filter == null || accepts(child, filter)) {
+                File file = new File(dir, name(child));
+                if (subdirectories || filter == null || filter.acceptsName(file.toPath())) {
+                    result.add(entry(child, file));
+                }
+            }
+        }
+        return result.toArray(new Entry[0]);
+    }
+
+    /** Passes the entries below the directory at the row that pass the filter to the sink, up to the specified depth below it. */
+    void visit(int row, File dir, int maxDepth, Filter filter, Consumer<Entry> sink) {
+        for (int child = firstChild(row), end = child + childCount(row); child < end; child++) {
+            boolean descend = directory(child) && maxDepth > 0;
+            boolean accepted = accepts(child, filter);
+            if (descend || accepted) {
+                File file = new File(dir, name(child));
+                if (accepted && filter.acceptsName(file.toPath())) {
+                    sink.accept(entry(child, file));
+                }
+                if (descend) {
+                    visit(child, file, maxDepth - 1, filter, sink);
+                }
+            }
+        }
+    }
+
+    private boolean accepts(int row, Filter filter) {
+        byte f = flags(row);
+        return filter.acceptsAttributes(size(row), lastModified(row),
+                Entry.type((f & DIRECTORY) != 0, (f & REGULAR_FILE) != 0, (f & SYMBOLIC_LINK) != 0));
+    }
+
+    private Entry entry(int row, File file) {
+        byte f = flags(row);
+        return new Entry(file, size(row), lastModified(row), (f & DIRECTORY) != 0, (f & REGULAR_FILE) != 0, (f & SYMBOLIC_LINK) != 0);
+    }
+
+    private int firstChild(int row) {
+        return buffer.getInt(firstChildren + 4 * row);
+    }
+
+    private int childCount(int row) {
+        return buffer.getInt(childCounts + 4 * row);
+    }
+
+    private long size(int row) {
+        return buffer.getLong(sizes + 8 * row);
+    }
+
+    private long lastModified(int row) {
+        return buffer.getLong(times + 8 * row);
+    }
+
+    private byte flags(int row) {
+        return buffer.get(flags + row);
+    }
+
+    private int nameOffset(int row) {
+        return buffer.getInt(nameOffsets + 4 * row);
+    }
+
+    private String name(int row) {
+        int start = names + nameOffset(row);
+        byte[] bytes = new byte[names + nameOffset(row + 1) - start];
+        ByteBuffer view = buffer.duplicate(); // its own position, so that queries stay thread-safe
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Indexes the tree at the root and replaces the index file atomically. With a previous index of the same tree,
+     * each directory is read again only if its modification time changed; otherwise its rows are copied,
+     * and only its subdirectories are looked at again. The previous index stays open.
+     * Returns false if any directory could not be read.
+     */
+    static boolean build(Path root, Path file, DirectoryIndex previous, BiConsumer<Path, IOException> errors) throws IOException {
+        String rootName = root.toAbsolutePath().normalize().toString();
+        Entry top = Entry.read(root.toFile());
+        if (!top.directory) {
+            throw Files.exists(root) ? new NotDirectoryException(root.toString()) : new NoSuchFileException(root.toString());
+        }
+        top = new Entry(top.file, top.size, top.lastModified, true, false, false); // the root is always followed
+        if (previous != null && !previous.root.equals(rootName)) {
+            previous = null;
+        }
+        Columns columns = new Columns();
+        columns.add(-1, rootName, top, previous == null ? -1 : 0);
+        boolean ok = true;
+        List<File> dirs = new ArrayList<>(); // the paths of the directory rows, in row order
+        dirs.add(new File(rootName));
+        int nextDir = 0;
+        for (int row = 0; row < columns.rows; row++) {
+            if (columns.flags[row] != DIRECTORY) {
+                continue;
+            }
+            File dir = dirs.get(nextDir);
+            dirs.set(nextDir++, null);
+            int old = columns.old[row];
+            int first = columns.rows;
+            if (old >= 0 && previous.directory(old) && previous.lastModified(old) == columns.times[row]) {
+                for (int o = previous.firstChild(old), end = o + previous.childCount(old); o < end; o++) {
+                    String name = previous.name(o);
+                    if (previous.directory(o)) { // a subdirectory may have changed: read its attributes again
+                        File subdirectory = new File(dir, name);
+                        columns.add(row, name, Entry.read(subdirectory), o);
+                        if (columns.flags[columns.rows - 1] == DIRECTORY) {
+                            dirs.add(subdirectory);
+                        }
+                    } else {
+                        columns.copy(row, name, previous, o);
+                    }
+                }
+            } else {
+                List<Entry> entries = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+                    for (Path path : stream) {
+                        entries.add(Entry.read(path.toFile()));
+                    }
+                } catch (IOException ex) {
+                    errors.accept(dir.toPath(), ex);
+                    ok = false;
+                }
+                entries.sort(Sort.NAME.order);
+                for (Entry e : entries) {
+                    columns.add(row, e.name, e, old >= 0 ? previous.find(old, e.name) : -1);
+                    if (columns.flags[columns.rows - 1] == DIRECTORY) {
+                        dirs.add(e.file);
+                    }
+                }
+            }
+            columns.firstChildren[row] = first;
+            columns.childCounts[row] = columns.rows - first;
+        }
+        columns.write(file);
+        return ok;
+    }
+
+    /** The columns of an index being built, in memory. */
+    private static final class Columns {
+        int rows;
+        int[] parents = new int[1024];
+        int[] firstChildren = new int[1024];
+        int[] childCounts = new int[1024];
+        long[] sizes = new long[1024];
+        long[] times = new long[1024];
+        byte[] flags = new byte[1024];
+        int[] nameOffsets = new int[1025];
+        /** The row of each directory in the previous index, or -1: not written. */
+        int[] old = new int[1024];
+        final ByteArrayOutputStream names = new ByteArrayOutputStream();
+
+        void add(int parent, String name, Entry e, int previousRow) {
+            byte f = (byte) ((e.directory ? DIRECTORY : 0) | (e.regularFile ? REGULAR_FILE : 0) | (e.symbolicLink ? SYMBOLIC_LINK : 0));
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            add(parent, e.size, e.lastModified, f, bytes, previousRow);
+        }
+
+        void copy(int parent, String name, DirectoryIndex previous, int row) {
+            add(parent, previous.size(row), previous.lastModified(row), previous.flags(row), name.getBytes(StandardCharsets.UTF_8), -1);
+        }
+
+        private void add(int parent, long size, long time, byte f, byte[] name, int previousRow) {
+            if (rows == parents.length) {
+                int capacity = 2 * rows;
+                parents = Arrays.copyOf(parents, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                childCounts = Arrays.copyOf(childCounts, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                times = Arrays.copyOf(times, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+                old = Arrays.copyOf(old, capacity);
+            }
+            parents[rows] = parent;
+            sizes[rows] = size;
+            times[rows] = time;
+            flags[rows] = f;
+            old[rows] = f == DIRECTORY ? previousRow : -1;
+            names.write(name, 0, name.length);
+            nameOffsets[++rows] = names.size();
+        }
+
+        /** Writes the index to a temporary file next to the index file, and then moves it into place. */
+        void write(Path file) throws IOException {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+                    byte[] root = names.toByteArray();
+                    byte[] rootName = Arrays.copyOf(root, nameOffsets[1]); // the name of the root row is its path
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(rows);
+                    out.writeInt(rootName.length);
+                    out.write(rootName);
+                    for (int[] column : new int[][] {parents, firstChildren, childCounts}) {
+                        for (int i = 0; i < rows; i++) {
+                            out.writeInt(column[i]);
+                        }
+                    }
+                    for (long[] column : new long[][] {sizes, times}) {
+                        for (int i = 0; i < rows; i++) {
+                            out.writeLong(column[i]);
+                        }
+                    }
+                    out.write(flags, 0, rows);
+                    for (int i = 0; i <= rows; i++) {
+                        out.writeInt(nameOffsets[i]);
+                    }
+                    out.write(root);
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package picocli.nativeimage.demo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds files with identical contents while reading as little as possible.
+ * <ol>
+ *   <li>Files are grouped by size; a file with a unique size has no duplicates and is never opened.</li>
+ *   <li>Files larger than two samples are grouped by a hash of their first and last {@link #SAMPLE_SIZE} bytes.</li>
+ *   <li>Only the remaining candidates are fully hashed, and grouped by their digest.</li>
+ * </ol>
+ * Hashing runs in parallel on an {@link OrderedExecutor}. Empty files are ignored.
+ */
+final class DuplicateFinder {
+    static final int SAMPLE_SIZE = 4096;
+
+    interface Digester {
+        byte[] digest(Path path) throws Exception;
+    }
+
+    static final class Group {
+        final long size;
+        final byte[] digest;
+        final List<Path> paths;
+
+        Group(long size, byte[] digest, List<Path> paths) {
+            this.size = size;
+            this.digest = digest;
+            this.paths = paths;
+        }
+    }
+
+    /** A file with its size, and the latest hash computed for it. */
+    private static final class Candidate {
+        final Path path;
+        final long size;
+        byte[] hash;
+
+        Candidate(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    private final OrderedExecutor executor;
+    private final Digester digester;
+    private final BiConsumer<Path, Throwable> errors;
+    private final ThreadLocal<ByteBuffer> samples = ThreadLocal.withInitial(() -> ByteBuffer.allocate(2 * SAMPLE_SIZE));
+    private final ThreadLocal<Hasher> sampleHashers = ThreadLocal.withInitial(FastChecksums.XxHash64::new);
+
+    /** The number of non-empty regular files found. */
+    long scanned;
+    /** The number of files whose first and last bytes were hashed. */
+    long sampled;
+    /** The number of files that were hashed completely. */
+    long hashed;
+    /** Whether any file could not be read. */
+    boolean failed;
+
+    /**
+     * @param executor the executor to hash files on
+     * @param digester computes the full digest of a file
+     * @param errors   notified of files that cannot be read
+     */
+    DuplicateFinder(OrderedExecutor executor, Digester digester, BiConsumer<Path, Throwable> errors) {
+        this.executor = executor;
+        this.digester = digester;
+        this.errors = errors;
+    }
+
+    /** Returns the groups of duplicate files under the specified roots, largest files first. */
+    List<Group> find(List<Path> roots) throws IOException, InterruptedException {
+        Map<Long, List<Candidate>> bySize = new HashMap<>();
+        for (Path root : roots) {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && attrs.size() > 0) {
+                        bySize.computeIfAbsent(attrs.size(), k -> new ArrayList<>()).add(new Candidate(file, attrs.size()));
+                        scanned++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    errors.accept(file, ex);
+                    failed = true;
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        List<Candidate> large = new ArrayList<>();
+        for (Map.Entry<Long, List<Candidate>> entry : bySize.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                (entry.getKey() > 2 * SAMPLE_SIZE ? large : candidates).addAll(entry.getValue());
+            }
+        }
+        bySize.clear();
+
+        sampled = large.size();
+        for (List<Candidate> sameSample : group(large, this::sample)) {
+            candidates.addAll(sameSample);
+        }
+
+        hashed = candidates.size();
+        List<Group> result = new ArrayList<>();
+        for (List<Candidate> same : group(candidates, digester)) {
+            List<Path> paths = new ArrayList<>(same.size());
+            for (Candidate candidate : same) {
+                paths.add(candidate.path);
+            }
+            paths.sort(Comparator.naturalOrder());
+            result.add(new Group(same.get(0).size, same.get(0).hash, paths));
+        }
+        result.sort(Comparator.comparingLong((Group g) -> g.size).reversed().thenComparing(g -> g.paths.get(0)));
+        return result;
+    }
+
+    /**
+     * Hashes the candidates in parallel and returns the groups of two or more candidates
+     * with the same size and hash.
+     */
+    private Collection<List<Candidate>> group(List<Candidate> candidates, Digester hash) throws InterruptedException {
+        Map<String, List<Candidate>> groups = new HashMap<>();
+        boolean success = executor.run(candidates, candidate -> hash.digest(candidate.path),
+                new OrderedExecutor.Listener<Candidate, byte[]>() {
+                    @Override
+                    public boolean completed(Candidate candidate, byte[] digest) {
+                        candidate.hash = digest;
+                        String key = candidate.size + ":" + Arrays.toString(digest);
+                        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(candidate);
+                        return true;
+                    }
+
+                    @Override
+                    public void failed(Candidate candidate, Throwable cause) {
+                        errors.accept(candidate.path, cause);
+                    }
+                });
+        failed |= !success;
+        groups.values().removeIf(group -> group.size() < 2);
+        return groups.values();
+    }
+
+    private byte[] sample(Path path) throws IOException {
+        ByteBuffer buffer = samples.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            buffer.limit(SAMPLE_SIZE);
+            DigestEngine.readFully(channel, buffer, 0);
+            buffer.limit(2 * SAMPLE_SIZE);
+            DigestEngine.readFully(channel, buffer, size - SAMPLE_SIZE);
+        }
+        buffer.flip();
+        Hasher hasher = sampleHashers.get();
+        hasher.update(buffer);
+        return hasher.digest();
+    }
+}
@@ -0,0 +1,74 @@
+package picocli.nativeimage.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.IntStream;
+
+/** A snapshot of the attributes of a file, read once, so sorting and printing do not stat the file again. */
+final class Entry {
+    /** Directories with at least this many entries are read and sorted in parallel. */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    final File file;
+    final String name;
+    final long size;
+    final long lastModified;
+    /** Whether the file is a directory, or a symbolic link to one. */
+    final boolean directory;
+    /** Whether the file is a regular file, or a symbolic link to one. */
+    final boolean regularFile;
+    final boolean symbolicLink;
+
+    Entry(File file, long size, long lastModified, boolean directory, boolean regularFile, boolean symbolicLink) {
+        this.file = file;
+        this.name = file.getName();
+        this.size = size;
+        this.lastModified = lastModified;
+        this.directory = directory;
+        this.regularFile = regularFile;
+        this.symbolicLink = symbolicLink;
+    }
+
+    Type type() {
+        return type(directory, regularFile, symbolicLink);
+    }
+
+    static Type type(boolean directory, boolean regularFile, boolean symbolicLink) {
+        return symbolicLink ? Type.LINK : directory ? Type.DIRECTORY : regularFile ? Type.FILE : Type.OTHER;
+    }
+
+    /** Reads the attributes of the files, in parallel if there are many. */
+    static Entry[] snapshot(File[] files) {
+        Entry[] result = new Entry[files.length];
+        IntStream indices = IntStream.range(0, files.length);
+        (files.length >= PARALLEL_THRESHOLD ? indices.parallel() : indices).forEach(i -> result[i] = read(files[i]));
+        return result;
+    }
+
+    /**
+     * Reads the attributes of the file, or of the target of a symbolic link. Like {@code File.length()} and
+     * {@code File.lastModified()}, returns zeros if the attributes cannot be read.
+     */
+    static Entry read(File file) {
+        Path path = file.toPath();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            boolean symbolicLink = attributes.isSymbolicLink();
+            if (symbolicLink) {
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException ex) {
+                    return new Entry(file, 0, 0, false, false, true); // dangling
+                }
+            }
+            return new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    attributes.isDirectory(), attributes.isRegularFile(), symbolicLink);
+        } catch (IOException ex) {
+            return new Entry(file, 0, 0, false, false, false);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package picocli.nativeimage.demo;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes entries in one of the output {@link Format formats} without allocating per entry: numbers and
+ * timestamps are encoded by hand straight into a reused byte buffer, and the buffer is written to the
+ * underlying stream in batches. {@link Format#TEXT} matches {@code ls -l}-like output; the other formats
+ * always write the path of the entry, in UTF-8.
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+final class EntryWriter implements Flushable {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    private final OutputStream out;
+    private final Format format;
+    private final byte[] buffer;
+    private final byte[] digits = new byte[20];
+    private final byte[][] months = new byte[12][];
+    private final TimeZone zone = TimeZone.getDefault();
+    private int count;
+
+    EntryWriter(OutputStream out, Format format) {
+        this(out, format, DEFAULT_BUFFER_SIZE);
+    }
+
+    EntryWriter(OutputStream out, Format format, int bufferSize) {
+        this.out = out;
+        this.format = format;
+        this.buffer = new byte[bufferSize];
+        String[] names = DateFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getShortMonths();
+        for (int i = 0; i < 12; i++) {
+            months[i] = names[i].getBytes(); // like %tb
+        }
+    }
+
+    /** Writes the header line of the CSV and TSV formats. */
+    synchronized void begin() {
+        if (format == Format.CSV) {
+            put("path,size,modified,type");
+            newLine();
+        } else if (format == Format.TSV) {
+            put("path\tsize\tmodified\ttype");
+            newLine();
+        }
+    }
+
+    /** Writes the header line of the CSV and TSV formats for disk usage rows. */
+    synchronized void beginUsage() {
+        if (format == Format.CSV) {
+            put("path,apparent,allocated,files");
+            newLine();
+        } else if (format == Format.TSV) {
+            put("path\tapparent\tallocated\tfiles");
+            newLine();
+        }
+    }
+
+    /** Writes an empty line and the title of a section of a report, in {@link Format#TEXT} only. */
+    synchronized void title(String title) {
+        if (format == Format.TEXT) {
+            newLine();
+            putText(title);
+            newLine();
+        }
+    }
+
+    /** Writes the name of a directory before its entries, preceded by an empty line unless it is the first, in {@link Format#TEXT} only. */
+    synchronized void header(File dir, boolean first) {
+        if (format == Format.TEXT) {
+            if (!first) {
+                newLine();
+            }
+            putText(dir.getPath());
+            put((byte) ':');
+            newLine();
+        }
+    }
+
+    /** @param path whether to write the path of the entry rather than its name, in {@link Format#TEXT} */
+    synchronized void write(Entry e, boolean path) {
+        switch (format) {
+            case TEXT:
+                putNumber(e.size, 10, (byte) ' ');
+                put((byte) ' ');
+                putLocalTime(e.lastModified);
+                put((byte) ' ');
+                putText(path ? e.file.getPath() : e.name);
+                newLine();
+                break;
+            case NDJSON:
+                put("{\"path\":\"");
+                putJson(e.file.getPath());
+                put("\",\"size\":");
+                putNumber(e.size, 0, (byte) ' ');
+                put(",\"modified\":\"");
+                putInstant(e.lastModified);
+                put("\",\"type\":\"");
+                put(e.type().name());
+                put("\"}");
+                newLine();
+                break;
+            case CSV:
+            case TSV:
+                byte separator = (byte) (format == Format.CSV ? ',' : '\t');
+                if (format == Format.CSV) {
+                    putCsv(e.file.getPath());
+                } else {
+                    putTsv(e.file.getPath());
+                }
+                put(separator);
+                putNumber(e.size, 0, (byte) ' ');
+                put(separator);
+                putInstant(e.lastModified);
+                put(separator);
+                put(e.type().name());
+                newLine();
+                break;
+            case NULL_DELIMITED:
+                String name = e.file.getPath();
+                for (int i = 0; i < name.length(); i++) {
+                    i = putUtf8(name, i);
+                }
+                put((byte) 0);
+                break;
+            default:
+                throw new IllegalStateException("Unknown format " + format);
+        }
+    }
+
+    /** Writes the disk usage of a directory: its apparent size, allocated size and number of files. */
+    synchronized void write(File dir, Usage usage) {
+        switch (format) {
+            case TEXT:
+                putNumber(usage.apparent, 14, (byte) ' ');
+                put((byte) ' ');
+                putNumber(usage.allocated, 14, (byte) ' ');
+                put((byte) ' ');
+                putNumber(usage.files, 10, (byte) ' ');
+                put((byte) ' ');
+                putText(dir.getPath());
+                newLine();
+                break;
+            case NDJSON:
+                put("{\"path\":\"");
+                putJson(dir.getPath());
+                put("\",\"apparent\":");
+                putNumber(usage.apparent, 0, (byte) ' ');
+                put(",\"allocated\":");
+                putNumber(usage.allocated, 0, (byte) ' ');
+                put(",\"files\":");
+                putNumber(usage.files, 0, (byte) ' ');
+                put((byte) '}');
+                newLine();
+                break;
+            case CSV:
+            case TSV:
+                byte separator = (byte) (format == Format.CSV ? ',' : '\t');
+                if (format == Format.CSV) {
+                    putCsv(dir.getPath());
+                } else {
+                    putTsv(dir.getPath());
+                }
+                put(separator);
+                putNumber(usage.apparent, 0, (byte) ' ');
+                put(separator);
+                putNumber(usage.allocated, 0, (byte) ' ');
+                put(separator);
+                putNumber(usage.files, 0, (byte) ' ');
+                newLine();
+                break;
+            case NULL_DELIMITED:
+                String path = dir.getPath();
+                for (int i = 0; i < path.length(); i++) {
+                    i = putUtf8(path, i);
+                }
+                put((byte) 0);
+                break;
+            default:
+                throw new IllegalStateException("Unknown format " + format);
+        }
+    }
+
+    /** Writes an entry with a change marker, {@code +} or {@code -}, and its 1-based position in the listing, in {@link Format#TEXT}. */
+    synchronized void change(char marker, int position, Entry e) {
+        put((byte) marker);
+        putNumber(position + 1, 0, (byte) ' ');
+        put((byte) ' ');
+        write(e, false);
+    }
+
+    /** Moves the cursor of an ANSI terminal to the top left corner and clears the screen. */
+    synchronized void clearScreen() {
+        put("\u001B[H\u001B[2J");
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.write(buffer, 0, count);
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        count = 0;
+    }
+
+    /** Writes the time like {@code %tb %2te %tY %tH:%tM}, in the default time zone. */
+    private void putLocalTime(long millis) {
+        long local = millis + zone.getOffset(millis);
+        long days = Math.floorDiv(local, MILLIS_PER_DAY);
+        long minutes = Math.floorMod(local, MILLIS_PER_DAY) / 60_000;
+        long date = civil(days);
+        for (byte b : months[(int) (date >> 8 & 0xFF) - 1]) {
+            put(b);
+        }
+        put((byte) ' ');
+        putNumber(date & 0xFF, 2, (byte) ' ');
+        put((byte) ' ');
+        putNumber(date >> 16, 4, (byte) '0');
+        put((byte) ' ');
+        putNumber(minutes / 60, 2, (byte) '0');
+        put((byte) ':');
+        putNumber(minutes % 60, 2, (byte) '0');
+    }
+
+    /** Writes the time in ISO-8601 format in UTC, with milliseconds: {@code 2024-01-31T14:30:00.000Z}. */
+    private void putInstant(long millis) {
+        long date = civil(Math.floorDiv(millis, MILLIS_PER_DAY));
+        long time = Math.floorMod(millis, MILLIS_PER_DAY);
+        putNumber(date >> 16, 4, (byte) '0');
+        put((byte) '-');
+        putNumber(date >> 8 & 0xFF, 2, (byte) '0');
+        put((byte) '-');
+        putNumber(date & 0xFF, 2, (byte) '0');
+        put((byte) 'T');
+        putNumber(time / 3_600_000, 2, (byte) '0');
+        put((byte) ':');
+        putNumber(time / 60_000 % 60, 2, (byte) '0');
+        put((byte) ':');
+        putNumber(time / 1000 % 60, 2, (byte) '0');
+        put((byte) '.');
+        putNumber(time % 1000, 3, (byte) '0');
+        put((byte) 'Z');
+    }
+
+    /**
+     * Returns the proleptic Gregorian date of the day since the epoch, packed as {@code year << 16 | month << 8 | day},
+     * with Howard Hinnant's {@code civil_from_days} algorithm.
+     */
+    static long civil(long days) {
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 16 | month << 8 | day;
+    }
+
+    /** Writes the number in decimal, padded on the left to the width. */
+    private void putNumber(long value, int width, byte pad) {
+        boolean negative = value < 0;
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            digits[n++] = '-';
+        }
+        for (int i = n; i < width; i++) {
+            put(pad);
+        }
+        while (n > 0) {
+            put(digits[--n]);
+        }
+    }
+
+    private void putJson(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c < 0x20) {
+                put("\\u00");
+                put(HEX[c >> 4]);
+                put(HEX[c & 0xF]);
+            } else {
+                i = putUtf8(text, i);
+            }
+        }
+    }
+
+    /** Writes the text as an RFC 4180 field, quoted only if needed. */
+    private void putCsv(String text) {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (quote) {
+            put((byte) '"');
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                put((byte) '"');
+            }
+            i = putUtf8(text, i);
+        }
+        if (quote) {
+            put((byte) '"');
+        }
+    }
+
+    /** Writes the text with backslash escapes for tabs, line breaks and backslashes, which TSV fields cannot hold. */
+    private void putTsv(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            byte escape = c == '\t' ? (byte) 't' : c == '\n' ? (byte) 'n' : c == '\r' ? (byte) 'r' : c == '\\' ? (byte) '\\' : 0;
+            if (escape != 0) {
+                put((byte) '\\');
+                put(escape);
+            } else {
+                i = putUtf8(text, i);
+            }
+        }
+    }
+
+    /** Writes the character at the index in UTF-8, and returns the index of its last char: surrogate pairs take two. */
+    private int putUtf8(String text, int i) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+            put((byte) c);
+        } else if (c < 0x800) {
+            put((byte) (0xC0 | c >> 6));
+            put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, text.charAt(++i));
+            put((byte) (0xF0 | codePoint >> 18));
+            put((byte) (0x80 | codePoint >> 12 & 0x3F));
+            put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            put((byte) (0x80 | codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            put((byte) '?'); // unpaired, as String.getBytes does
+        } else {
+            put((byte) (0xE0 | c >> 12));
+            put((byte) (0x80 | c >> 6 & 0x3F));
+            put((byte) (0x80 | c & 0x3F));
+        }
+        return i;
+    }
+
+    /** Writes ASCII text byte by byte; other text is encoded with the platform charset, as {@code PrintStream} does. */
+    private void putText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                for (byte b : text.substring(i).getBytes()) {
+                    put(b);
+                }
+                return;
+            }
+            put((byte) c);
+        }
+    }
+
+    /** Writes ASCII text. */
+    private void put(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    private void newLine() {
+        for (byte b : LINE_SEPARATOR) {
+            put(b);
+        }
+    }
+
+    private void put(byte b) {
+        if (count == buffer.length) {
+            try {
+                out.write(buffer, 0, count);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            count = 0;
+        }
+        buffer[count++] = b;
+    }
+}
@@ -0,0 +1,194 @@
+package picocli.nativeimage.demo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Sorts any number of entries in bounded memory: files are added in batches of up to {@code maxEntries},
+ * whose attributes are read and sorted in memory. If there is more than one batch, each is written to a
+ * temporary run file, and {@link #forEach(Consumer)} merges the runs. The run files are deleted on {@link #close()}.
+ */
+final class ExternalSort implements Closeable {
+    static final int DEFAULT_MAX_ENTRIES = 1 << 18;
+
+    private final Comparator<Entry> order;
+    private final Sort sort;
+    private final boolean reverse;
+    private final int maxEntries;
+    private final Predicate<Entry> filter;
+    private final List<Path> runs = new ArrayList<>();
+    private File[] batch;
+    private int size;
+    private Entry[] inMemory = new Entry[0];
+
+    ExternalSort(Sort sort, boolean reverse, int maxEntries) {
+        this(sort, reverse, maxEntries, e -> true);
+    }
+
+    /** @param filter tests each entry, in the order added, once its attributes are read; entries it rejects are dropped before sorting */
+    ExternalSort(Sort sort, boolean reverse, int maxEntries, Predicate<Entry> filter) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.sort = sort;
+        this.reverse = reverse;
+        this.order = reverse ? sort.order.reversed() : sort.order;
+        this.maxEntries = maxEntries;
+        this.filter = filter;
+        this.batch = new File[Math.min(maxEntries, 256)]; // grown as needed: most directories are small
+    }
+
+    void add(File file) throws IOException {
+        if (size == batch.length) {
+            if (size < maxEntries) {
+                batch = Arrays.copyOf(batch, (int) Math.min(maxEntries, 2L * size));
+            } else {
+                spill();
+            }
+        }
+        batch[size++] = file;
+    }
+
+    /** The number of runs written to disk so far. */
+    int runs() {
+        return runs.size();
+    }
+
+    /**
+     * Reads the attributes of the entries not read yet, filters and sorts them, so that the filter has seen
+     * every entry. Called by {@link #forEach(Consumer)}; no entries may be added afterwards.
+     */
+    void finish() throws IOException {
+        if (size > 0) {
+            if (runs.isEmpty()) {
+                inMemory = sorted();
+            } else {
+                spill();
+            }
+        }
+    }
+
+    /** Passes all entries to the consumer, in order. */
+    void forEach(Consumer<Entry> consumer) throws IOException {
+        finish();
+        if (runs.isEmpty()) {
+            for (Entry e : inMemory) {
+                consumer.accept(e);
+            }
+            return;
+        }
+        // runs hold consecutive parts of the listing, so ties go to the earlier run to keep the sort stable
+        PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), (a, b) -> {
+            int result = order.compare(a.entry, b.entry);
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+        });
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                Run run = new Run(runs.get(i), i);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                consumer.accept(run.entry);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+        }
+    }
+
+    private Entry[] sorted() {
+        Entry[] entries = Entry.snapshot(Arrays.copyOf(batch, size));
+        int n = 0;
+        for (Entry e : entries) {
+            if (filter.test(e)) {
+                entries[n++] = e;
+            }
+        }
+        Entry[] result = sort.sort(n == entries.length ? entries : Arrays.copyOf(entries, n), reverse);
+        Arrays.fill(batch, 0, size, null);
+        size = 0;
+        return result;
+    }
+
+    /** Writes the entries in the batch to a new run file, sorted, and clears the batch. */
+    private void spill() throws IOException {
+        Path path = Files.createTempFile("filelist", ".run");
+        runs.add(path);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+            for (Entry e : sorted()) {
+                out.writeUTF(e.file.getPath());
+                out.writeLong(e.size);
+                out.writeLong(e.lastModified);
+                out.writeBoolean(e.directory);
+                out.writeBoolean(e.regularFile);
+                out.writeBoolean(e.symbolicLink);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path path : runs) {
+            Files.deleteIfExists(path);
+        }
+        runs.clear();
+    }
+
+    /** Reads a sorted run file one entry at a time. */
+    private static final class Run implements Closeable {
+        private final DataInputStream in;
+        final int index;
+        Entry entry;
+
+        Run(Path path, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            this.index = index;
+        }
+
+        boolean next() throws IOException {
+            String path;
+            try {
+                path = in.readUTF();
+            } catch (EOFException ex) {
+                return false;
+            }
+            entry = new Entry(new File(path), in.readLong(), in.readLong(), in.readBoolean(), in.readBoolean(), in.readBoolean());
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // read only
+            }
+        }
+    }
+}
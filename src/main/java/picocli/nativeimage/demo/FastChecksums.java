@@ -0,0 +1,355 @@
+package picocli.nativeimage.demo;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Fast non-cryptographic checksums for integrity checks where a {@code MessageDigest} costs more than needed:
+ * CRC32 and Adler32 from {@code java.util.zip}, CRC32C and xxHash64.
+ * <p>
+ * CRC32C uses the hardware-accelerated {@code java.util.zip.CRC32C} when running on Java 9 or later,
+ * and a table-driven implementation otherwise. xxHash64 is implemented in Java (seed 0) and prints
+ * in the same canonical big-endian form as {@code xxhsum}.
+ * </p>
+ */
+final class FastChecksums {
+    private FastChecksums() {}
+
+    static List<String> names() {
+        return Arrays.asList("CRC32", "CRC32C", "ADLER32", "XXH64");
+    }
+
+    /** Returns a hasher for the specified upper-case name, or {@code null} if it is not a fast checksum. */
+    static Hasher forName(String name) {
+        switch (name) {
+            case "CRC32":
+                return new Crc32Hasher();
+            case "CRC32C":
+                return JdkCrc32C.AVAILABLE ? new JdkCrc32C() : new Crc32C();
+            case "ADLER32":
+                return new Adler32Hasher();
+            case "XXH64":
+            case "XXHASH64":
+                return new XxHash64();
+            default:
+                return null;
+        }
+    }
+
+    private static byte[] toBytes(int value) {
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private abstract static class ChecksumHasher implements Hasher {
+        final Checksum checksum;
+
+        ChecksumHasher(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            checksum.update(bytes, offset, length);
+        }
+
+        @Override
+        public byte[] digest() {
+            byte[] result = toBytes((int) checksum.getValue());
+            checksum.reset();
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            checksum.reset();
+        }
+    }
+
+    static final class Crc32Hasher extends ChecksumHasher {
+        Crc32Hasher() {
+            super(new CRC32());
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ((CRC32) checksum).update(buffer);
+        }
+    }
+
+    static final class Adler32Hasher extends ChecksumHasher {
+        Adler32Hasher() {
+            super(new Adler32());
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ((Adler32) checksum).update(buffer);
+        }
+    }
+
+    /** The intrinsified {@code java.util.zip.CRC32C} of Java 9 and later, called through method handles. */
+    static final class JdkCrc32C extends ChecksumHasher {
+        static final boolean AVAILABLE;
+        private static final MethodHandle CONSTRUCTOR;
+        private static final MethodHandle UPDATE;
+
+        static {
+            MethodHandle constructor = null;
+            MethodHandle update = null;
+            try {
+                Class<?> cls = Class.forName("java.util.zip.CRC32C");
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                constructor = lookup.findConstructor(cls, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Checksum.class));
+                update = lookup.findVirtual(cls, "update", MethodType.methodType(void.class, ByteBuffer.class))
+                        .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                constructor = null; // Java 8: fall back to the table-driven implementation
+            }
+            AVAILABLE = constructor != null;
+            CONSTRUCTOR = constructor;
+            UPDATE = update;
+        }
+
+        JdkCrc32C() {
+            super(newInstance());
+        }
+
+        private static Checksum newInstance() {
+            try {
+                return (Checksum) CONSTRUCTOR.invokeExact();
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            try {
+                UPDATE.invokeExact(checksum, buffer);
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /** CRC32C (Castagnoli), slicing-by-8. */
+    static final class Crc32C implements ResumableHasher {
+        private static final int[][] TABLES = new int[8][256];
+
+        static {
+            for (int n = 0; n < 256; n++) {
+                int crc = n;
+                for (int k = 0; k < 8; k++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+                }
+                TABLES[0][n] = crc;
+            }
+            for (int n = 0; n < 256; n++) {
+                for (int t = 1; t < 8; t++) {
+                    TABLES[t][n] = (TABLES[t - 1][n] >>> 8) ^ TABLES[0][TABLES[t - 1][n] & 0xFF];
+                }
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer le = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int pos = le.position();
+            int limit = le.limit();
+            int c = crc;
+            for (; pos + 8 <= limit; pos += 8) {
+                long word = le.getLong(pos);
+                int lo = (int) word ^ c;
+                int hi = (int) (word >>> 32);
+                c = TABLES[7][lo & 0xFF] ^ TABLES[6][(lo >>> 8) & 0xFF]
+                        ^ TABLES[5][(lo >>> 16) & 0xFF] ^ TABLES[4][lo >>> 24]
+                        ^ TABLES[3][hi & 0xFF] ^ TABLES[2][(hi >>> 8) & 0xFF]
+                        ^ TABLES[1][(hi >>> 16) & 0xFF] ^ TABLES[0][hi >>> 24];
+            }
+            for (; pos < limit; pos++) {
+                c = (c >>> 8) ^ TABLES[0][(c ^ le.get(pos)) & 0xFF];
+            }
+            crc = c;
+            buffer.position(limit);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            update(ByteBuffer.wrap(bytes, offset, length));
+        }
+
+        @Override
+        public byte[] digest() {
+            byte[] result = toBytes(~crc);
+            reset();
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+
+        @Override
+        public byte[] saveState() {
+            return toBytes(crc);
+        }
+
+        @Override
+        public void restoreState(byte[] state) {
+            if (state.length != 4) {
+                throw new IllegalArgumentException("Invalid CRC32C state");
+            }
+            crc = ByteBuffer.wrap(state).getInt();
+        }
+    }
+
+    /** Streaming xxHash64 with seed 0. */
+    static final class XxHash64 implements ResumableHasher {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+
+        private final ByteBuffer pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+        private long total;
+
+        XxHash64() {
+            reset();
+        }
+
+        @Override
+        public void reset() {
+            v1 = P1 + P2;
+            v2 = P2;
+            v3 = 0;
+            v4 = -P1;
+            total = 0;
+            pending.clear();
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            update(ByteBuffer.wrap(bytes, offset, length));
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            total += in.remaining();
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && in.hasRemaining()) {
+                    pending.put(in.get());
+                }
+                if (pending.hasRemaining()) {
+                    buffer.position(buffer.limit());
+                    return;
+                }
+                stripe(pending, 0);
+                pending.clear();
+            }
+            int pos = in.position();
+            int limit = in.limit();
+            for (; pos + 32 <= limit; pos += 32) {
+                stripe(in, pos);
+            }
+            for (; pos < limit; pos++) {
+                pending.put(in.get(pos));
+            }
+            buffer.position(buffer.limit());
+        }
+
+        private void stripe(ByteBuffer in, int pos) {
+            v1 = round(v1, in.getLong(pos));
+            v2 = round(v2, in.getLong(pos + 8));
+            v3 = round(v3, in.getLong(pos + 16));
+            v4 = round(v4, in.getLong(pos + 24));
+        }
+
+        private static long round(long acc, long input) {
+            return Long.rotateLeft(acc + input * P2, 31) * P1;
+        }
+
+        private static long merge(long acc, long value) {
+            return (acc ^ round(0, value)) * P1 + P4;
+        }
+
+        @Override
+        public byte[] digest() {
+            long h;
+            if (total >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = P5;
+            }
+            h += total;
+            int pos = 0;
+            int limit = pending.position();
+            for (; pos + 8 <= limit; pos += 8) {
+                h ^= round(0, pending.getLong(pos));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (pos + 4 <= limit) {
+                h ^= (pending.getInt(pos) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                pos += 4;
+            }
+            for (; pos < limit; pos++) {
+                h ^= (pending.get(pos) & 0xFF) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            reset();
+            return ByteBuffer.allocate(8).putLong(h).array();
+        }
+
+        @Override
+        public byte[] saveState() {
+            ByteBuffer state = ByteBuffer.allocate(5 * 8 + 1 + pending.position());
+            state.putLong(v1).putLong(v2).putLong(v3).putLong(v4).putLong(total).put((byte) pending.position());
+            for (int i = 0; i < pending.position(); i++) {
+                state.put(pending.get(i));
+            }
+            return state.array();
+        }
+
+        @Override
+        public void restoreState(byte[] state) {
+            if (state.length < 41 || state.length != 41 + state[40] || state[40] < 0 || state[40] >= 32) {
+                throw new IllegalArgumentException("Invalid XXH64 state");
+            }
+            ByteBuffer in = ByteBuffer.wrap(state);
+            v1 = in.getLong();
+            v2 = in.getLong();
+            v3 = in.getLong();
+            v4 = in.getLong();
+            total = in.getLong();
+            pending.clear();
+            pending.put(state, 41, in.get());
+        }
+    }
+}
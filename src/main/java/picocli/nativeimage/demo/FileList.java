@@ -0,0 +1,366 @@
+package picocli.nativeimage.demo;
+
+import picocli.AutoComplete;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+@Command(name = "filelist", mixinStandardHelpOptions = true,
+        description = {
+                "List information about the <file> (the current directory by default).",
+                "Sort entries alphabetically if no other sort order is specified." },
+        version = {
+                "filelist 2.0",
+                "Picocli " + picocli.CommandLine.VERSION,
+                "JVM: ${java.version} (${java.vendor} ${java.vm.name} ${java.vm.version})",
+                "OS: ${os.name} ${os.version} ${os.arch}"},
+        subcommands = AutoComplete.GenerateCompletion.class)
+public class FileList implements Callable<Integer> {
+
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    @Parameters(index = "0", defaultValue = ".", description = "The file to list.")
+    private File file;
+
+    @Option(names = {"-S", "--sort"},
+            description = "Sort order. One of: ${COMPLETION-CANDIDATES}. Default value: ${DEFAULT-VALUE}.")
+    private Sort sort = Sort.NAME;
+
+    @Option(names = {"-r", "--reverse"}, description = "Reverse order while sorting.")
+    private boolean reverse;
+
+    @Option(names = "--format", paramLabel = "<format>", converter = Format.Converter.class,
+            description = {"Output format: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}.",
+                    "ndjson, csv and tsv write the path, size, last modified time (ISO-8601, in UTC) and type of each entry, "
+                            + "or with --du the path, apparent size, allocated size and number of files of each directory. "
+                            + "null-delimited writes each path followed by a NUL character, as find -print0 does."})
+    private Format format = Format.TEXT;
+
+    @Option(names = "--name", paramLabel = "<glob>",
+            description = "Only list entries whose name matches the glob pattern, for example '*.log'. Name tests are done before any attributes are read.")
+    private String glob;
+
+    @Option(names = "--regex", paramLabel = "<regex>",
+            description = "Only list entries whose name contains a match for the regular expression.")
+    private Pattern regex;
+
+    @Option(names = "--min-size", paramLabel = "<bytes>", description = "Only list entries of at least this many bytes.")
+    private long minSize = Long.MIN_VALUE;
+
+    @Option(names = "--max-size", paramLabel = "<bytes>", description = "Only list entries of at most this many bytes.")
+    private long maxSize = Long.MAX_VALUE;
+
+    @Option(names = "--modified-after", paramLabel = "<time>", converter = Filter.TimeConverter.class,
+            description = "Only list entries last modified after this local date or date-time, for example 2024-01-31 or 2024-01-31T14:30.")
+    private long modifiedAfter = Long.MIN_VALUE;
+
+    @Option(names = "--modified-before", paramLabel = "<time>", converter = Filter.TimeConverter.class,
+            description = "Only list entries last modified before this local date or date-time.")
+    private long modifiedBefore = Long.MAX_VALUE;
+
+    @Option(names = "--type", paramLabel = "<type>", split = ",",
+            description = "Only list entries of these types: ${COMPLETION-CANDIDATES}. Symbolic links are of type LINK, whatever they point to.")
+    private List<Type> types = new ArrayList<>();
+
+    @Option(names = "--index", paramLabel = "<index>",
+            description = {"Serve the listing from a persistent index of the tree at <file>, stored in the <index> file, and build the index first if it does not exist yet.",
+                    "Indexes do not follow symbolic links, and do not notice changes to files until they are refreshed."})
+    private Path indexFile;
+
+    @Option(names = "--refresh",
+            description = {"With --index, bring the index up to date first: directories are read again only if their modification time changed.",
+                    "If the index is of a tree that does not contain <file>, replace it with an index of <file>."})
+    private boolean refresh;
+
+    @Option(names = "--watch",
+            description = {"After listing the directory, keep watching it and print each change as it happens: "
+                    + "- and the position in the sorted listing of an entry that went away, or + and the position of a new or changed entry, followed by the entry.",
+                    "Entries that compare equal are ordered by name. Stop with Ctrl-C."})
+    private boolean watch;
+
+    @Option(names = "--redraw", description = "With --watch, clear the screen and print the whole listing after each change, instead of the change.")
+    private boolean redraw;
+
+    @Option(names = {"--top", "--limit"}, paramLabel = "<n>",
+            description = "Print only the first <n> entries in sort order, keeping no more than <n> entries in memory. With -R, the first <n> entries of the whole tree, with their paths.")
+    private int top;
+
+    @Option(names = "--sort-buffer", paramLabel = "<entries>",
+            description = "Number of entries to sort in memory; larger directories are sorted in runs on disk. Default value: ${DEFAULT-VALUE}.")
+    private int sortBuffer = ExternalSort.DEFAULT_MAX_ENTRIES;
+
+    @Option(names = {"-R", "--recursive"}, description = "List subdirectories recursively.")
+    private boolean recursive;
+
+    @Option(names = "--max-depth", paramLabel = "<depth>",
+            description = "Descend at most <depth> levels below the <file> when listing recursively. With --du, print totals for directories at most <depth> levels deep. Default: unlimited.")
+    private int maxDepth = Integer.MAX_VALUE;
+
+    @Option(names = {"-L", "--follow"},
+            description = "Follow symbolic links to directories when listing recursively. Links that loop back to a parent directory are reported and skipped.")
+    private boolean follow;
+
+    @Option(names = "--unordered",
+            description = "When listing recursively, print the path of each entry as soon as it is read, in no particular order, rather than each directory sorted in turn.")
+    private boolean unordered;
+
+    @Option(names = {"-j", "--threads"},
+            description = "Number of directories to read in parallel when listing recursively or with --du. Default: number of processors. Use more on network file systems.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--du",
+            description = "Print the disk usage of each directory in the tree instead of listing it: the apparent size, allocated size and number of files of its whole subtree, in bytes.")
+    private boolean diskUsage;
+
+    @Option(names = "--heaviest", paramLabel = "<n>",
+            description = "With --du, also print the <n> directories with the largest allocated size, largest first. Only in text format.")
+    private int heaviest;
+
+    @Option(names = "--block-size", paramLabel = "<bytes>",
+            description = "With --du, the allocation unit: allocated sizes are estimated by rounding the size of each file up to a multiple of it. Default value: ${DEFAULT-VALUE}.")
+    private long blockSize = Usage.DEFAULT_BLOCK_SIZE;
+
+    public static void main(String... args) {
+        System.exit(new CommandLine(new FileList()).setCaseInsensitiveEnumValuesAllowed(true).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        if (blockSize < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--block-size must be positive: " + blockSize);
+        }
+        if (top < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--top must not be negative: " + top);
+        }
+        if (heaviest > 0 && format != Format.TEXT) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--heaviest prints a text report and cannot be combined with --format " + format);
+        }
+        if (watch && (recursive || diskUsage || indexFile != null || top > 0 || format != Format.TEXT)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--watch lists one directory in text format, without -R, --du, --index or --top");
+        }
+        EntryWriter out = new EntryWriter(System.out, format);
+        try {
+            if (diskUsage) {
+                out.beginUsage();
+            } else {
+                out.begin();
+            }
+            return list(out);
+        } finally {
+            out.flush();
+        }
+    }
+
+    private int list(EntryWriter out) throws IOException, InterruptedException {
+        if (indexFile != null && !diskUsage) {
+            return listIndex(out);
+        }
+        if (watch) {
+            return watch(out);
+        }
+        if (recursive || diskUsage) {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+            try {
+                Walker walker = new Walker(pool, sort, reverse, sortBuffer, maxDepth, follow, filter(), out);
+                if (diskUsage) {
+                    return walker.printUsage(file, blockSize, heaviest) ? 0 : 1;
+                }
+                if (top > 0) {
+                    return walker.printTop(file, top) ? 0 : 1;
+                }
+                return (unordered ? walker.printUnordered(file) : walker.printOrdered(file)) ? 0 : 1;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        Filter filter = filter();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(file.toPath())) {
+            if (top > 0) {
+                Top<Entry> first = new Top<>(top, reverse ? sort.order.reversed() : sort.order);
+                for (Path path : entries) {
+                    if (sort == Sort.NONE && first.offered() == top) {
+                        break; // the rest cannot make it
+                    }
+                    if (filter.acceptsName(path)) {
+                        Entry e = Entry.read(path.toFile());
+                        if (filter.acceptsAttributes(e)) {
+                            first.offer(e);
+                        }
+                    }
+                }
+                for (Entry e : first.toList()) {
+                    out.write(e, false);
+                }
+            } else if (sort == Sort.NONE) { // print as the entries are read
+                for (Path path : entries) {
+                    if (filter.acceptsName(path)) {
+                        Entry e = Entry.read(path.toFile());
+                        if (filter.acceptsAttributes(e)) {
+                            out.write(e, false);
+                        }
+                    }
+                }
+            } else {
+                try (ExternalSort sorted = new ExternalSort(sort, reverse, sortBuffer, filter::acceptsAttributes)) {
+                    for (Path path : entries) {
+                        if (filter.acceptsName(path)) {
+                            sorted.add(path.toFile());
+                        }
+                    }
+                    sorted.forEach(e -> out.write(e, false));
+                }
+            }
+        } catch (IOException ex) {
+            out.flush();
+            System.err.printf("filelist: %s: %s%n", file, describe(ex));
+            return 1;
+        }
+        return 0;
+    }
+
+    /** Lists the directory, and then prints its changes until interrupted or until the directory is deleted. */
+    private int watch(EntryWriter out) throws IOException, InterruptedException {
+        Path dir = file.toPath();
+        try (WatchService service = dir.getFileSystem().newWatchService()) {
+            // register before the first scan, so that no change goes unseen
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Watch view = new Watch(dir, reverse ? sort.order.reversed() : sort.order, filter(), out, redraw);
+            view.scan(false);
+            view.print();
+            out.flush();
+            view.run(service);
+        } catch (IOException ex) {
+            out.flush();
+            System.err.printf("filelist: %s: %s%n", file, describe(ex));
+            return 1;
+        }
+        return 0;
+    }
+
+    /** Serves the listing from the index, after building or refreshing it if needed. */
+    private int listIndex(EntryWriter out) throws IOException {
+        BiConsumer<Path, IOException> errors = (path, ex) -> {
+            out.flush();
+            System.err.printf("filelist: %s: %s%n", path, describe(ex));
+        };
+        boolean ok = true;
+        DirectoryIndex index = null;
+        try {
+            int row;
+            try {
+                index = Files.exists(indexFile) ? DirectoryIndex.open(indexFile) : null;
+                if (index != null && !index.covers(file)) {
+                    if (!refresh) { // never discard the index of another tree unless asked to
+                        out.flush();
+                        System.err.printf("filelist: index %s covers %s, not %s%n", indexFile, index.root(), file);
+                        return 1;
+                    }
+                    index.close(); // it is replaced
+                    index = null;
+                }
+                row = index == null ? -1 : index.find(file);
+                if (index == null || row < 0 || refresh) {
+                    if (index == null) {
+                        ok = DirectoryIndex.build(file.toPath(), indexFile, null, errors);
+                    } else { // also when the file is new in the tree, which only a refresh can find
+                        ok = DirectoryIndex.build(Paths.get(index.root()), indexFile, index, errors);
+                        index.close();
+                    }
+                    index = DirectoryIndex.open(indexFile);
+                    row = index.find(file);
+                }
+            } catch (NoSuchFileException | NotDirectoryException ex) {
+                errors.accept(file.toPath(), ex);
+                return 1;
+            } catch (IOException ex) {
+                errors.accept(indexFile, ex);
+                return 1;
+            }
+            return printIndexed(index, row, out) && ok ? 0 : 1;
+        } finally {
+            if (index != null) {
+                index.close();
+            }
+        }
+    }
+
+    /** Prints the listing from the index, and returns false if the file is not an indexed directory. */
+    private boolean printIndexed(DirectoryIndex index, int row, EntryWriter out) {
+        if (row < 0 || !index.directory(row)) {
+            out.flush();
+            System.err.printf("filelist: %s: %s%n", file, row < 0 ? "No such file or directory" : "Not a directory");
+            return false;
+        }
+        Filter filter = filter();
+        File dir = file;
+        if (top > 0) {
+            Top<Entry> first = new Top<>(top, reverse ? sort.order.reversed() : sort.order);
+            index.visit(row, dir, recursive ? maxDepth : 0, filter, first::offer);
+            for (Entry e : first.toList()) {
+                out.write(e, recursive);
+            }
+        } else if (recursive && unordered) {
+            index.visit(row, dir, maxDepth, filter, e -> out.write(e, true));
+        } else if (recursive) {
+            printIndexed(index, row, dir, 0, filter, out);
+        } else {
+            for (Entry e : sort.sort(index.children(row, dir, filter, false), reverse)) {
+                out.write(e, false);
+            }
+        }
+        return true;
+    }
+
+    /** Prints the directory in the index sorted, and then its subdirectories, depth first, like the ordered {@link Walker}. */
+    private void printIndexed(DirectoryIndex index, int row, File dir, int depth, Filter filter, EntryWriter out) {
+        out.header(dir, depth == 0);
+        for (Entry e : sort.sort(index.children(row, dir, filter, false), reverse)) {
+            out.write(e, false);
+        }
+        if (depth < maxDepth) {
+            for (Entry subdirectory : sort.sort(index.children(row, dir, null, true), reverse)) {
+                printIndexed(index, index.find(row, subdirectory.name), subdirectory.file, depth + 1, filter, out);
+            }
+        }
+    }
+
+    private Filter filter() {
+        PathMatcher matcher = glob == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        return new Filter(matcher, regex, minSize, maxSize, modifiedAfter, modifiedBefore, types);
+    }
+
+    static String describe(IOException ex) {
+        if (ex instanceof NoSuchFileException) {
+            return "No such file or directory";
+        }
+        if (ex instanceof NotDirectoryException) {
+            return "Not a directory";
+        }
+        if (ex instanceof FileSystemLoopException) {
+            return "File system loop detected";
+        }
+        return ex.getMessage() == null ? ex.toString() : ex.getMessage();
+    }
+}
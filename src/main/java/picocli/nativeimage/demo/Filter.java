@@ -0,0 +1,85 @@
+package picocli.nativeimage.demo;
+
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Tests entries against the filter options while the tree is read, so that entries that are filtered out
+ * are never stored or sorted. Tests on the name need no attributes: callers do them first, with
+ * {@link #acceptsName(Path)}, and read the attributes only of entries that pass.
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+final class Filter implements Predicate<Entry> {
+    private final PathMatcher glob;
+    private final Pattern regex;
+    private final long minSize;
+    private final long maxSize;
+    private final long modifiedAfter;
+    private final long modifiedBefore;
+    private final List<Type> types;
+
+    /**
+     * @param glob           matches the names to list, or {@code null} to list any name
+     * @param regex          a pattern found in the names to list, or {@code null} to list any name
+     * @param modifiedAfter  the time after which entries must have been modified, in milliseconds since the epoch
+     * @param modifiedBefore the time before which entries must have been modified, in milliseconds since the epoch
+     * @param types          the types of entries to list, or an empty list to list all types
+     */
+    Filter(PathMatcher glob, Pattern regex, long minSize, long maxSize, long modifiedAfter, long modifiedBefore, List<Type> types) {
+        this.glob = glob;
+        this.regex = regex;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.modifiedAfter = modifiedAfter;
+        this.modifiedBefore = modifiedBefore;
+        this.types = types;
+    }
+
+    boolean acceptsName(Path path) {
+        if (glob == null && regex == null) {
+            return true;
+        }
+        Path name = path.getFileName();
+        return (glob == null || glob.matches(name)) && (regex == null || regex.matcher(name.toString()).find());
+    }
+
+    boolean acceptsAttributes(Entry e) {
+        return acceptsAttributes(e.size, e.lastModified, e.type());
+    }
+
+    boolean acceptsAttributes(long size, long lastModified, Type type) {
+        return size >= minSize && size <= maxSize
+                && lastModified > modifiedAfter && lastModified < modifiedBefore
+                && (types.isEmpty() || types.contains(type));
+    }
+
+    @Override
+    public boolean test(Entry e) {
+        return acceptsName(e.file.toPath()) && acceptsAttributes(e);
+    }
+
+    /** Converts a local date or date-time in ISO-8601 format to milliseconds since the epoch. */
+    static final class TimeConverter implements CommandLine.ITypeConverter<Long> {
+        @Override
+        public Long convert(String value) {
+            LocalDateTime time;
+            try {
+                time = value.contains("T") ? LocalDateTime.parse(value) : LocalDate.parse(value).atStartOfDay();
+            } catch (DateTimeParseException ex) {
+                throw new CommandLine.TypeConversionException("'" + value + "' is not a date like 2024-01-31 or a date-time like 2024-01-31T14:30");
+            }
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
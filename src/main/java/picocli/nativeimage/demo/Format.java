@@ -0,0 +1,27 @@
+package picocli.nativeimage.demo;
+
+import picocli.CommandLine;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** Output formats, named on the command line in any case, with {@code -} or {@code _}: {@code null-delimited}. */
+enum Format {
+    TEXT, NDJSON, CSV, TSV, NULL_DELIMITED;
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    static final class Converter implements CommandLine.ITypeConverter<Format> {
+        @Override
+        public Format convert(String value) {
+            try {
+                return Format.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException ex) {
+                throw new CommandLine.TypeConversionException("expected one of " + Arrays.toString(values()) + " but was '" + value + "'");
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package picocli.nativeimage.demo;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * A streaming checksum or message digest. Both cryptographic {@code MessageDigest}s and the fast
+ * non-cryptographic checksums in {@link FastChecksums} implement this interface, so the code that
+ * reads input, prints results and verifies manifests does not depend on the kind of algorithm.
+ * <p>
+ * Checksum values are returned as big-endian bytes, so they print the same way as digests.
+ * Instances are not thread-safe.
+ * </p>
+ */
+interface Hasher {
+
+    /** Updates the hash with the remaining bytes of the buffer, advancing its position to its limit. */
+    void update(ByteBuffer buffer);
+
+    void update(byte[] bytes, int offset, int length);
+
+    /** Returns the hash of all bytes since the last reset, and resets this hasher. */
+    byte[] digest();
+
+    void reset();
+
+    default void update(byte b) {
+        update(new byte[] {b}, 0, 1);
+    }
+
+    default void update(byte[] bytes) {
+        update(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns a new hasher for the specified algorithm: one of the {@linkplain FastChecksums#names() fast checksums},
+     * or the name of any {@code MessageDigest} algorithm. Names are not case-sensitive.
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    static Hasher forName(String algorithm) throws NoSuchAlgorithmException {
+        Hasher result = FastChecksums.forName(algorithm.toUpperCase(Locale.ROOT));
+        return result != null ? result : of(MessageDigest.getInstance(algorithm));
+    }
+
+    static Hasher of(MessageDigest digest) {
+        return new Hasher() {
+            @Override
+            public void update(ByteBuffer buffer) {
+                digest.update(buffer);
+            }
+
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                digest.update(bytes, offset, length);
+            }
+
+            @Override
+            public void update(byte b) {
+                digest.update(b);
+            }
+
+            @Override
+            public byte[] digest() {
+                return digest.digest();
+            }
+
+            @Override
+            public void reset() {
+                digest.reset();
+            }
+        };
+    }
+}
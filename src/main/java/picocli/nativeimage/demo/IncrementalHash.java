@@ -0,0 +1,202 @@
+package picocli.nativeimage.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Hashes files that only ever grow, such as logs and write-ahead logs, by hashing only the bytes appended
+ * since the previous run. After hashing a file, the intermediate state of each {@link ResumableHasher} and the
+ * number of bytes hashed are saved to a sidecar file next to it, {@code <file>.ckstate}.
+ * <p>
+ * The next run resumes from the saved state only if the file still has the same file key (inode),
+ * is at least as long as before, and a sample of the previously hashed prefix (its first, middle and last
+ * {@value #SAMPLE_SIZE} bytes) still has the same XXH64 hash. Otherwise the file is hashed from the start.
+ * A missing, corrupt or outdated sidecar also means a full rehash; it is replaced atomically.
+ * </p>
+ * <p>
+ * This class is thread-safe; files are hashed with the caller's {@link DigestEngine}.
+ * </p>
+ */
+final class IncrementalHash {
+    static final String SUFFIX = ".ckstate";
+    static final int SAMPLE_SIZE = 4096;
+
+    private static final int MAGIC = 0x434B5354; // "CKST"
+    private static final int VERSION = 1;
+
+    /** The number of files hashed from a saved state. */
+    final AtomicLong resumed = new AtomicLong();
+    /** The number of files hashed from the start. */
+    final AtomicLong rehashed = new AtomicLong();
+    /** The number of bytes not read again thanks to a saved state. */
+    final AtomicLong skippedBytes = new AtomicLong();
+
+    private final ThreadLocal<Map<String, ResumableHasher>> hashers = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<ByteBuffer> samples = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SAMPLE_SIZE));
+
+    static List<String> algorithms() {
+        return Arrays.asList("CRC32C", "XXH64", "SHA-256");
+    }
+
+    /** Returns a new resumable hasher for the specified upper-case name, or {@code null} if the algorithm is not resumable. */
+    static ResumableHasher forName(String algorithm) {
+        switch (algorithm) {
+            case "CRC32C":
+                return new FastChecksums.Crc32C();
+            case "XXH64":
+            case "XXHASH64":
+                return new FastChecksums.XxHash64();
+            case "SHA-256":
+            case "SHA256":
+                return new Sha256();
+            default:
+                return null;
+        }
+    }
+
+    static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    /** Returns the digests of the file for the specified upper-case algorithm names, and updates its sidecar file. */
+    byte[][] digest(Path file, List<String> algorithms, DigestEngine engine) throws IOException {
+        ResumableHasher[] array = new ResumableHasher[algorithms.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = hashers.get().computeIfAbsent(algorithms.get(i), IncrementalHash::forName);
+            array[i].reset();
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String fileKey = String.valueOf(attributes.fileKey());
+        long start = resume(file, fileKey, attributes.size(), algorithms, array);
+        long end = engine.update(file, start, array);
+        if (start > 0) {
+            resumed.incrementAndGet();
+            skippedBytes.addAndGet(start);
+        } else {
+            rehashed.incrementAndGet();
+        }
+        byte[][] states = new byte[array.length][];
+        byte[][] result = new byte[array.length][];
+        for (int i = 0; i < array.length; i++) {
+            states[i] = array[i].saveState();
+            result[i] = array[i].digest();
+        }
+        if (end != start || start == 0) {
+            save(file, fileKey, end, algorithms, states);
+        }
+        return result;
+    }
+
+    /** Restores the hashers from the sidecar file if it is still valid and returns the position to resume from, or returns 0. */
+    private long resume(Path file, String fileKey, long size, List<String> algorithms, ResumableHasher[] array) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(sidecar(file));
+        } catch (NoSuchFileException ex) {
+            return 0;
+        }
+        if (bytes.length < 4) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+            return 0; // torn or corrupt
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !fileKey.equals(in.readUTF())) {
+                return 0;
+            }
+            long length = in.readLong();
+            long sample = in.readLong();
+            if (length > size || sample != sample(file, length)) {
+                return 0; // truncated, rotated or rewritten
+            }
+            Map<String, byte[]> states = new HashMap<>();
+            for (int count = in.readInt(); count > 0; count--) {
+                String algorithm = in.readUTF();
+                byte[] state = new byte[in.readInt()];
+                in.readFully(state);
+                states.put(algorithm, state);
+            }
+            if (!states.keySet().containsAll(algorithms)) {
+                return 0; // hashed with other algorithms last time
+            }
+            for (int i = 0; i < array.length; i++) {
+                array[i].restoreState(states.get(algorithms.get(i)));
+            }
+            return length;
+        } catch (IOException | IllegalArgumentException ex) {
+            for (ResumableHasher hasher : array) {
+                hasher.reset();
+            }
+            return 0;
+        }
+    }
+
+    private void save(Path file, String fileKey, long length, List<String> algorithms, byte[][] states) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fileKey);
+            out.writeLong(length);
+            out.writeLong(sample(file, length));
+            out.writeInt(states.length);
+            for (int i = 0; i < states.length; i++) {
+                out.writeUTF(algorithms.get(i));
+                out.writeInt(states[i].length);
+                out.write(states[i]);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        }
+        Path sidecar = sidecar(file);
+        Path temp = Files.createTempFile(sidecar.toAbsolutePath().getParent(), sidecar.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(temp, sidecar, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Returns the XXH64 hash of the first, middle and last {@link #SAMPLE_SIZE} bytes of the first {@code length} bytes of the file. */
+    private long sample(Path file, long length) throws IOException {
+        ByteBuffer buffer = samples.get();
+        FastChecksums.XxHash64 hasher = new FastChecksums.XxHash64();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int n = (int) Math.min(SAMPLE_SIZE, length);
+            for (long position : new long[] {0, (length - n) / 2, length - n}) {
+                buffer.clear().limit(n);
+                DigestEngine.readFully(channel, buffer, position);
+                buffer.flip();
+                hasher.update(buffer);
+            }
+        }
+        return ByteBuffer.wrap(hasher.digest()).getLong();
+    }
+}
@@ -0,0 +1,182 @@
+package picocli.nativeimage.demo;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Reads checksum manifests: lines of the form {@code <digest>  <path>}, as printed by {@code checksum}
+ * and {@code md5sum}. A {@code '*'} before the path (binary mode marker) is accepted and ignored.
+ * A digest may be prefixed with a label naming its algorithm, as in {@code SHA-256:<digest>} or
+ * {@code tree:<ALGORITHM>:<chunk size>:<digest>}.
+ * <p>
+ * Lines are read lazily, so manifests of any size can be verified in bounded memory. Manifests are read as UTF-8,
+ * the charset {@link DigestWriter} writes paths in.
+ * </p>
+ */
+final class Manifest implements Iterable<Manifest.Entry>, Closeable {
+
+    static final class Entry {
+        /** The expected digest in lower-case hex. */
+        final String expected;
+        /** The algorithm name or tree hash label, or {@code null} if the line has no label. */
+        final String label;
+        final File file;
+
+        Entry(String expected, String label, File file) {
+            this.expected = expected;
+            this.label = label;
+            this.file = file;
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath();
+        }
+    }
+
+    private final List<File> manifests;
+    private final Consumer<String> warnings;
+    private BufferedReader reader;
+    private boolean withoutEntries;
+
+    /**
+     * @param manifests the manifest files to read, {@code '-'} is the standard input stream
+     * @param warnings  receives a message for every line that is not properly formatted,
+     *                  and for every manifest without any properly formatted line
+     */
+    Manifest(List<File> manifests, Consumer<String> warnings) {
+        this.manifests = manifests;
+        this.warnings = warnings;
+    }
+
+    /** Parses a single manifest line, returning {@code null} if it is not properly formatted. */
+    static Entry parse(String line) {
+        int space = line.indexOf(' ');
+        if (space <= 0 || space + 1 >= line.length()) {
+            return null;
+        }
+        String digest = line.substring(0, space);
+        int pathStart = space + 1;
+        if (line.charAt(pathStart) == ' ' || line.charAt(pathStart) == '*') {
+            pathStart++;
+        }
+        if (pathStart >= line.length()) {
+            return null;
+        }
+        String label = null;
+        int colon = digest.lastIndexOf(':');
+        if (colon >= 0) {
+            label = digest.substring(0, colon).toUpperCase(Locale.ROOT);
+            digest = digest.substring(colon + 1);
+            if (label.startsWith("TREE:")) {
+                label = "tree" + label.substring(4);
+            }
+        }
+        if (!isHex(digest)) {
+            return null;
+        }
+        return new Entry(digest.toLowerCase(Locale.ROOT), label, new File(line.substring(pathStart)));
+    }
+
+    private static boolean isHex(String s) {
+        if (s.isEmpty() || s.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        return new Iterator<Entry>() {
+            private final Iterator<File> files = manifests.iterator();
+            private File current;
+            private int lineNumber;
+            private int entries;
+            private Entry next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        if (reader == null) {
+                            if (!files.hasNext()) {
+                                return false;
+                            }
+                            current = files.next();
+                            lineNumber = 0;
+                            entries = 0;
+                            reader = open(current);
+                        }
+                        String line = reader.readLine();
+                        if (line == null) {
+                            close();
+                            if (entries == 0) {
+                                withoutEntries = true;
+                                warnings.accept(current + ": no properly formatted checksum lines found");
+                            }
+                            continue;
+                        }
+                        lineNumber++;
+                        if (line.trim().isEmpty()) {
+                            continue;
+                        }
+                        next = parse(line);
+                        if (next == null) {
+                            warnings.accept(current + ": " + lineNumber + ": improperly formatted checksum line");
+                        } else {
+                            entries++;
+                        }
+                    }
+                    return true;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /** Returns whether a manifest read so far had no properly formatted lines, in which case nothing of it was verified. */
+    boolean foundManifestWithoutEntries() {
+        return withoutEntries;
+    }
+
+    private static BufferedReader open(File file) throws IOException {
+        return file == CheckSum.STDIN
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
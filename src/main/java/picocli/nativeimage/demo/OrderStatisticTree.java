@@ -0,0 +1,195 @@
+package picocli.nativeimage.demo;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * A sorted set that also knows the position of each element: a treap whose nodes count the nodes
+ * in their subtree, so that adding, removing and finding elements by value or by position take
+ * O(log n) expected time. Elements must be unique in the order.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+final class OrderStatisticTree<T> implements Iterable<T> {
+    private final Comparator<? super T> order;
+    private Node<T> root;
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    OrderStatisticTree(Comparator<? super T> order) {
+        this.order = order;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /** Adds the element and returns its position, or returns -1 if an equal element is present. */
+    int add(T value) {
+        int position = rank(value);
+        if (position < size() && order.compare(get(position), value) == 0) {
+            return -1;
+        }
+        root = insert(root, new Node<>(value, priority()));
+        return position;
+    }
+
+    /** Removes the element and returns the position it had, or returns -1 if it is not present. */
+    int remove(T value) {
+        int position = rank(value);
+        if (position == size() || order.compare(get(position), value) != 0) {
+            return -1;
+        }
+        root = delete(root, value);
+        return position;
+    }
+
+    /** Returns the number of elements less than the value. */
+    int rank(T value) {
+        int result = 0;
+        for (Node<T> t = root; t != null; ) {
+            if (order.compare(value, t.value) <= 0) {
+                t = t.left;
+            } else {
+                result += size(t.left) + 1;
+                t = t.right;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the element at the position. */
+    T get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size());
+        }
+        Node<T> t = root;
+        while (true) {
+            int left = size(t.left);
+            if (position < left) {
+                t = t.left;
+            } else if (position == left) {
+                return t.value;
+            } else {
+                position -= left + 1;
+                t = t.right;
+            }
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Deque<Node<T>> path = new ArrayDeque<>();
+        for (Node<T> t = root; t != null; t = t.left) {
+            path.push(t);
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Node<T> t = path.pop();
+                for (Node<T> n = t.right; n != null; n = n.left) {
+                    path.push(n);
+                }
+                return t.value;
+            }
+        };
+    }
+
+    private Node<T> insert(Node<T> t, Node<T> node) {
+        if (t == null) {
+            return node;
+        }
+        if (node.priority > t.priority) {
+            split(t, node.value, node);
+            return update(node);
+        }
+        if (order.compare(node.value, t.value) < 0) {
+            t.left = insert(t.left, node);
+        } else {
+            t.right = insert(t.right, node);
+        }
+        return update(t);
+    }
+
+    /** Splits the tree into the elements less than the key, which become the left subtree of the node, and the others, its right. */
+    private void split(Node<T> t, T key, Node<T> node) {
+        if (t == null) {
+            node.left = null;
+            node.right = null;
+        } else if (order.compare(t.value, key) < 0) {
+            split(t.right, key, node);
+            t.right = node.left;
+            node.left = update(t);
+        } else {
+            split(t.left, key, node);
+            t.left = node.right;
+            node.right = update(t);
+        }
+    }
+
+    private Node<T> delete(Node<T> t, T value) {
+        int result = order.compare(value, t.value);
+        if (result == 0) {
+            return merge(t.left, t.right);
+        }
+        if (result < 0) {
+            t.left = delete(t.left, value);
+        } else {
+            t.right = delete(t.right, value);
+        }
+        return update(t);
+    }
+
+    /** Merges two trees, all of whose elements in {@code a} are less than those in {@code b}. */
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+
+    private int priority() {
+        seed += 0x9E3779B97F4A7C15L; // SplitMix64
+        long z = seed;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (z ^ (z >>> 31));
+    }
+
+    private static int size(Node<?> t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static <T> Node<T> update(Node<T> t) {
+        t.size = size(t.left) + size(t.right) + 1;
+        return t;
+    }
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        int size = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+}
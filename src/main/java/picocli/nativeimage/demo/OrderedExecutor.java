@@ -0,0 +1,141 @@
+package picocli.nativeimage.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs tasks on a fixed-size thread pool and reports their results in input order.
+ * Only a bounded number of tasks are in flight at any time, so memory use does not
+ * depend on the number of inputs.
+ */
+final class OrderedExecutor implements AutoCloseable {
+
+    interface Task<T, R> {
+        R call(T input) throws Exception;
+    }
+
+    interface Listener<T, R> {
+        /** Receives a result and returns whether it counts as a success. */
+        boolean completed(T input, R result);
+        void failed(T input, Throwable cause);
+    }
+
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final boolean failFast;
+
+    /**
+     * @param threads  the number of worker threads
+     * @param failFast whether to cancel all outstanding work after the first failure or unsuccessful result
+     */
+    OrderedExecutor(int threads, boolean failFast) {
+        this.pool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        this.maxInFlight = threads * 4;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Calls the task for each input and notifies the listener in the order of the inputs.
+     * The inputs are iterated on a separate thread, so results are reported as soon as they are available,
+     * even while the iterator is waiting for more input. The listener is called on the calling thread.
+     * @return {@code true} if all tasks completed and the listener accepted all results, {@code false} otherwise
+     */
+    <T, R> boolean run(Iterable<T> inputs, Task<T, R> task, Listener<T, R> listener) throws InterruptedException {
+        BlockingQueue<Pending<T, R>> window = new ArrayBlockingQueue<>(maxInFlight);
+        Pending<T, R> end = new Pending<>(null, null);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                try {
+                    for (T input : inputs) {
+                        window.put(new Pending<>(input, pool.submit(() -> task.call(input))));
+                    }
+                } catch (RuntimeException ex) {
+                    failure.set(ex);
+                }
+                window.put(end);
+            } catch (InterruptedException ex) {
+                // stopped early
+            }
+        }, "checksum-submitter");
+        submitter.setDaemon(true);
+        submitter.start();
+
+        boolean success = true;
+        boolean finished = false;
+        try {
+            for (Pending<T, R> pending = window.take(); pending != end; pending = window.take()) {
+                if (!report(pending, listener)) {
+                    success = false;
+                    if (failFast) {
+                        return false;
+                    }
+                }
+            }
+            finished = true;
+        } finally {
+            if (!finished) {
+                submitter.interrupt();
+                cancelAll(window);
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return success;
+    }
+
+    private static <T, R> boolean report(Pending<T, R> pending, Listener<T, R> listener) throws InterruptedException {
+        try {
+            return listener.completed(pending.input, pending.future.get());
+        } catch (ExecutionException ex) {
+            listener.failed(pending.input, ex.getCause());
+            return false;
+        }
+    }
+
+    private static <T, R> void cancelAll(BlockingQueue<Pending<T, R>> window) {
+        List<Pending<T, R>> remaining = new ArrayList<>();
+        window.drainTo(remaining);
+        for (Pending<T, R> pending : remaining) {
+            if (pending.future != null) {
+                pending.future.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static final class Pending<T, R> {
+        final T input;
+        final Future<R> future;
+
+        Pending(T input, Future<R> future) {
+            this.input = input;
+            this.future = future;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "checksum-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
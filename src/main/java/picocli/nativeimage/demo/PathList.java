@@ -0,0 +1,71 @@
+package picocli.nativeimage.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily reads file paths separated by newlines or NUL characters, for example the output of
+ * {@code find} or {@code find -print0}. Empty entries are skipped, and a trailing carriage return
+ * is stripped from newline-separated paths.
+ * <p>
+ * The reader decides how the bytes of the paths are decoded; {@link CheckSum} reads them as UTF-8,
+ * as it does manifests, so that the result does not depend on the platform's default charset.
+ * </p>
+ */
+final class PathList implements Iterable<File> {
+    private final Reader reader;
+    private final char separator;
+
+    PathList(Reader reader, boolean nullSeparated) {
+        this.reader = reader;
+        this.separator = nullSeparated ? '\0' : '\n';
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+        return new Iterator<File>() {
+            private final StringBuilder path = new StringBuilder();
+            private File next;
+            private boolean endOfInput;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null && !endOfInput) {
+                        int c = reader.read();
+                        if (c == -1) {
+                            endOfInput = true;
+                        } else if (c != separator) {
+                            path.append((char) c);
+                            continue;
+                        }
+                        if (separator == '\n' && path.length() > 0 && path.charAt(path.length() - 1) == '\r') {
+                            path.setLength(path.length() - 1);
+                        }
+                        if (path.length() > 0) {
+                            next = new File(path.toString());
+                            path.setLength(0);
+                        }
+                    }
+                    return next != null;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public File next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                File result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+}
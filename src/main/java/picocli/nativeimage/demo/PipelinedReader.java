@@ -0,0 +1,106 @@
+package picocli.nativeimage.demo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Overlaps reading and processing of a stream: a reader thread fills a ring of reused direct buffers
+ * while the calling thread consumes the filled buffers in order.
+ * This keeps a pipe flowing while the consumer is busy hashing the previous buffer.
+ * <p>
+ * When the consumer fails, the reader thread is told to stop with a flag, not interrupted:
+ * interrupting a thread blocked on an interruptible channel closes the channel, and for
+ * {@code Channels.newChannel(System.in)} that would close standard input for the rest of the process.
+ * </p>
+ * <p>
+ * Instances are not thread-safe: use one reader per thread.
+ * </p>
+ */
+final class PipelinedReader {
+    static final int DEFAULT_BUFFERS = 4;
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    interface Sink {
+        /** Consumes the remaining bytes of the buffer. The buffer is reused after this method returns. */
+        void accept(ByteBuffer buffer) throws IOException;
+    }
+
+    private final ByteBuffer[] ring;
+
+    PipelinedReader() {
+        this(DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+    }
+
+    PipelinedReader(int buffers, int bufferSize) {
+        ring = new ByteBuffer[buffers];
+        for (int i = 0; i < buffers; i++) {
+            ring[i] = ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+
+    /** Reads the source until end of stream and passes every filled buffer to the sink, in order. */
+    void transfer(ReadableByteChannel source, Sink sink) throws IOException {
+        BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(ring.length + 1);
+        BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(ring.length + 1);
+        for (ByteBuffer buffer : ring) {
+            buffer.clear();
+            free.add(buffer);
+        }
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            try {
+                int read = 0;
+                while (read >= 0) {
+                    ByteBuffer buffer = free.take();
+                    if (cancelled.get()) {
+                        return; // the consumer gave up
+                    }
+                    while (buffer.hasRemaining() && (read = source.read(buffer)) >= 0) {
+                        // fill the buffer completely to minimize hand-offs
+                    }
+                    buffer.flip();
+                    if (buffer.hasRemaining()) {
+                        filled.put(buffer);
+                    }
+                }
+            } catch (IOException ex) {
+                failure.set(ex);
+            } catch (InterruptedException ex) {
+                return; // the consumer gave up
+            }
+            filled.add(END);
+        }, "checksum-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        boolean completed = false;
+        try {
+            for (ByteBuffer buffer = filled.take(); buffer != END; buffer = filled.take()) {
+                sink.accept(buffer);
+                buffer.clear();
+                free.add(buffer);
+            }
+            completed = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading");
+        } finally {
+            if (!completed) {
+                cancelled.set(true);
+                free.add(END); // wakes up the reader if it is waiting for a buffer
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package picocli.nativeimage.demo;
+
+/**
+ * A {@link Hasher} whose intermediate state can be saved and restored, so that hashing a file
+ * can resume where an earlier run stopped. The state of a JDK {@code MessageDigest} cannot be exported,
+ * so only algorithms implemented in this package are resumable.
+ */
+interface ResumableHasher extends Hasher {
+
+    /** Returns the state after the bytes hashed so far, without resetting this hasher. */
+    byte[] saveState();
+
+    /**
+     * Replaces the state of this hasher with a state returned by {@link #saveState()}.
+     * @throws IllegalArgumentException if the state is not valid for this algorithm
+     */
+    void restoreState(byte[] state);
+}
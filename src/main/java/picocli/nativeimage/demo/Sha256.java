@@ -0,0 +1,170 @@
+package picocli.nativeimage.demo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SHA-256 (FIPS 180-4) in Java, for {@link IncrementalHash}: unlike the JDK's {@code MessageDigest},
+ * its intermediate state can be saved and restored. Digests are identical to those of {@code MessageDigest}.
+ */
+final class Sha256 implements ResumableHasher {
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2};
+
+    private static final int[] INITIAL = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19};
+
+    private static final int STATE_SIZE = 8 * 4 + 8 + 1;
+
+    private final int[] h = new int[8];
+    private final int[] w = new int[64];
+    private final byte[] block = new byte[64];
+    private final byte[] scratch = new byte[8192];
+    private int blockLength;
+    private long total;
+
+    Sha256() {
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        System.arraycopy(INITIAL, 0, h, 0, 8);
+        blockLength = 0;
+        total = 0;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            int length = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, length);
+            update(scratch, 0, length);
+        }
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        total += length;
+        if (blockLength > 0) {
+            int n = Math.min(64 - blockLength, length);
+            System.arraycopy(bytes, offset, block, blockLength, n);
+            blockLength += n;
+            offset += n;
+            length -= n;
+            if (blockLength < 64) {
+                return;
+            }
+            compress(block, 0);
+            blockLength = 0;
+        }
+        for (; length >= 64; offset += 64, length -= 64) {
+            compress(bytes, offset);
+        }
+        System.arraycopy(bytes, offset, block, 0, length);
+        blockLength = length;
+    }
+
+    @Override
+    public byte[] digest() {
+        long bits = total * 8;
+        block[blockLength++] = (byte) 0x80;
+        if (blockLength > 56) {
+            while (blockLength < 64) {
+                block[blockLength++] = 0;
+            }
+            compress(block, 0);
+            blockLength = 0;
+        }
+        while (blockLength < 56) {
+            block[blockLength++] = 0;
+        }
+        for (int i = 7; i >= 0; i--) {
+            block[blockLength++] = (byte) (bits >>> (i * 8));
+        }
+        compress(block, 0);
+        ByteBuffer result = ByteBuffer.allocate(32);
+        for (int value : h) {
+            result.putInt(value);
+        }
+        reset();
+        return result.array();
+    }
+
+    @Override
+    public byte[] saveState() {
+        ByteBuffer state = ByteBuffer.allocate(STATE_SIZE + blockLength);
+        for (int value : h) {
+            state.putInt(value);
+        }
+        state.putLong(total).put((byte) blockLength).put(block, 0, blockLength);
+        return state.array();
+    }
+
+    @Override
+    public void restoreState(byte[] state) {
+        if (state.length < STATE_SIZE || state[STATE_SIZE - 1] < 0 || state[STATE_SIZE - 1] >= 64
+                || state.length != STATE_SIZE + state[STATE_SIZE - 1]) {
+            throw new IllegalArgumentException("Invalid SHA-256 state");
+        }
+        ByteBuffer in = ByteBuffer.wrap(state);
+        for (int i = 0; i < 8; i++) {
+            h[i] = in.getInt();
+        }
+        total = in.getLong();
+        blockLength = in.get();
+        in.get(block, 0, blockLength);
+    }
+
+    private void compress(byte[] data, int offset) {
+        for (int i = 0; i < 16; i++, offset += 4) {
+            w[i] = data[offset] << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+        }
+        for (int i = 16; i < 64; i++) {
+            int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = h[0];
+        int b = h[1];
+        int c = h[2];
+        int d = h[3];
+        int e = h[4];
+        int f = h[5];
+        int g = h[6];
+        int hh = h[7];
+        for (int i = 0; i < 64; i++) {
+            int t1 = hh + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25))
+                    + ((e & f) ^ (~e & g)) + K[i] + w[i];
+            int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22))
+                    + ((a & b) ^ (a & c) ^ (b & c));
+            hh = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += hh;
+    }
+}
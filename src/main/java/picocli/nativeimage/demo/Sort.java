@@ -0,0 +1,64 @@
+package picocli.nativeimage.demo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.ToLongFunction;
+
+enum Sort {
+    NONE((e1, e2) -> 0, null),
+    SIZE((e1, e2) -> Long.compare(e1.size, e2.size), e -> e.size),
+    NAME((e1, e2) -> e1.name.compareTo(e2.name), null),
+    TIME((e1, e2) -> Long.compare(e1.lastModified, e2.lastModified), e -> e.lastModified),
+    ;
+    public final Comparator<Entry> order;
+    /** The primitive sort key, if any: entries are then sorted on packed {@code long}s instead of with the comparator. */
+    final ToLongFunction<Entry> key;
+    Sort(Comparator<Entry> c, ToLongFunction<Entry> k) { order = c; key = k; }
+
+    /** Returns the entries in this order. Entries that compare equal stay in listing order. */
+    Entry[] sort(Entry[] entries, boolean reverse) {
+        if (this == NONE) {
+            return entries;
+        }
+        Entry[] result = entries.clone();
+        if (key == null || !sortPacked(entries, result, reverse)) {
+            Arrays.sort(result, reverse ? order.reversed() : order);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts on {@code (key - min) << indexBits | index}, so a primitive sort orders on the key
+     * and breaks ties on the listing order. Returns false if the key range and index do not fit in 63 bits.
+     */
+    private boolean sortPacked(Entry[] entries, Entry[] result, boolean reverse) {
+        int n = entries.length;
+        long[] packed = new long[n];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            packed[i] = key.applyAsLong(entries[i]);
+            min = Math.min(min, packed[i]);
+            max = Math.max(max, packed[i]);
+        }
+        long range = max - min;
+        int indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, n - 1));
+        if (n == 0 || range < 0 || 64 - Long.numberOfLeadingZeros(range) + indexBits > 63) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            long k = packed[i] - min;
+            packed[i] = (reverse ? range - k : k) << indexBits | i;
+        }
+        if (n >= Entry.PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(packed);
+        } else {
+            Arrays.sort(packed);
+        }
+        long mask = (1L << indexBits) - 1;
+        for (int i = 0; i < n; i++) {
+            result[i] = entries[(int) (packed[i] & mask)];
+        }
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package picocli.nativeimage.demo;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Prints per-file and total throughput figures, so a slow run shows whether reading or digesting
+ * is the bottleneck. Figures are printed as text, or as JSON lines: one object per file, one per
+ * counter section, and a final {@code "total"} object.
+ * <p>
+ * Nothing is measured unless a {@link Timings} instance is passed to the code that reads the input,
+ * so the instrumentation costs nothing when stats are off. This class is thread-safe.
+ * </p>
+ */
+final class Stats {
+    enum Format { TEXT, JSON }
+
+    /** Bytes read and nanoseconds spent reading and digesting one input; filled in by {@link DigestEngine}. */
+    static final class Timings {
+        long bytes;
+        long readNanos;
+        long digestNanos;
+    }
+
+    private final Format format;
+    private final PrintStream out;
+    private final long start = System.nanoTime();
+    private long files;
+    private long bytes;
+    private long readNanos;
+    private long digestNanos;
+
+    Stats(Format format, PrintStream out) {
+        this.format = format;
+        this.out = out;
+    }
+
+    /** Prints and adds to the totals the figures for one input, which took {@code elapsedNanos} to process. */
+    synchronized void file(Object file, Timings timings, long elapsedNanos) {
+        files++;
+        bytes += timings.bytes;
+        readNanos += timings.readNanos;
+        digestNanos += timings.digestNanos;
+        if (format == Format.JSON) {
+            out.printf(Locale.ROOT, "{\"file\":%s,\"bytes\":%d,\"readMillis\":%.3f,\"digestMillis\":%.3f,\"mbPerSecond\":%.1f}%n",
+                    quote(String.valueOf(file)), timings.bytes, millis(timings.readNanos), millis(timings.digestNanos),
+                    mbPerSecond(timings.bytes, elapsedNanos));
+        } else {
+            out.printf(Locale.ROOT, "checksum: stats: %s: %d bytes, read %.1f ms, digest %.1f ms, %.1f MB/s (%s bound)%n",
+                    file, timings.bytes, millis(timings.readNanos), millis(timings.digestNanos),
+                    mbPerSecond(timings.bytes, elapsedNanos), timings.readNanos > timings.digestNanos ? "I/O" : "CPU");
+        }
+    }
+
+    /** Prints named counters, such as cache hits and misses, as a section. Names are lower-case words. */
+    synchronized void counters(String section, String[] names, long[] values) {
+        StringBuilder line = new StringBuilder();
+        if (format == Format.JSON) {
+            line.append('{').append(quote(section)).append(":{");
+            for (int i = 0; i < names.length; i++) {
+                line.append(i == 0 ? "" : ",").append(quote(camelCase(names[i]))).append(':').append(values[i]);
+            }
+            line.append("}}");
+        } else {
+            line.append("checksum: ").append(section).append(':');
+            for (int i = 0; i < names.length; i++) {
+                line.append(i == 0 ? " " : ", ").append(values[i]).append(' ').append(names[i]);
+            }
+        }
+        out.println(line);
+    }
+
+    /** Prints the totals over all inputs, with the throughput over the wall-clock time since this object was created. */
+    synchronized void total() {
+        long elapsed = System.nanoTime() - start;
+        if (format == Format.JSON) {
+            out.printf(Locale.ROOT, "{\"total\":{\"files\":%d,\"bytes\":%d,\"readMillis\":%.3f,\"digestMillis\":%.3f,\"elapsedMillis\":%.3f,\"mbPerSecond\":%.1f}}%n",
+                    files, bytes, millis(readNanos), millis(digestNanos), millis(elapsed), mbPerSecond(bytes, elapsed));
+        } else {
+            out.printf(Locale.ROOT, "checksum: stats: total: %d file%s, %d bytes, read %.1f ms, digest %.1f ms, elapsed %.1f ms, %.1f MB/s%n",
+                    files, files == 1 ? "" : "s", bytes, millis(readNanos), millis(digestNanos), millis(elapsed), mbPerSecond(bytes, elapsed));
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return nanos <= 0 ? 0 : bytes * 1e3 / nanos;
+    }
+
+    /** Returns "redundantBytes" for "redundant bytes". */
+    private static String camelCase(String name) {
+        StringBuilder result = new StringBuilder(name.length());
+        boolean upper = false;
+        for (char c : name.toCharArray()) {
+            if (c == ' ') {
+                upper = true;
+            } else {
+                result.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return result.toString();
+    }
+
+    static String quote(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,63 @@
+package picocli.nativeimage.demo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first {@code n} elements offered, in the specified order, in a bounded heap:
+ * O(n) memory and O(log n) time per element. Of elements that compare equal, the ones offered first are kept,
+ * and listed first. This class is thread-safe.
+ */
+final class Top<T> {
+    private final int n;
+    private final Comparator<? super T> order;
+    private final Comparator<Ranked<T>> ranking;
+    private final PriorityQueue<Ranked<T>> heap; // the last element kept is at the head
+    private long offered;
+
+    Top(int n, Comparator<? super T> order) {
+        this.n = n;
+        this.order = order;
+        Comparator<Ranked<T>> byElement = (a, b) -> order.compare(a.element, b.element);
+        this.ranking = byElement.thenComparingLong(r -> r.sequence);
+        this.heap = new PriorityQueue<>(Math.max(1, n), ranking.reversed());
+    }
+
+    synchronized void offer(T element) {
+        long sequence = offered++;
+        if (heap.size() < n) {
+            heap.add(new Ranked<>(element, sequence));
+        } else if (n > 0 && order.compare(element, heap.peek().element) < 0) { // ties go to the earlier element
+            heap.poll();
+            heap.add(new Ranked<>(element, sequence));
+        }
+    }
+
+    /** The number of elements offered so far. */
+    synchronized long offered() {
+        return offered;
+    }
+
+    /** Returns the elements kept so far, in order. */
+    synchronized List<T> toList() {
+        List<Ranked<T>> ranked = new ArrayList<>(heap);
+        ranked.sort(ranking);
+        List<T> result = new ArrayList<>(ranked.size());
+        for (Ranked<T> r : ranked) {
+            result.add(r.element);
+        }
+        return result;
+    }
+
+    private static final class Ranked<T> {
+        final T element;
+        final long sequence;
+
+        Ranked(T element, long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package picocli.nativeimage.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes a Merkle tree hash of a file so that a single large file can be hashed on all cores.
+ * <p>
+ * The file is split into fixed-size chunks. Each leaf is {@code H(0x00 || chunk)};
+ * each inner node is {@code H(0x01 || left || right)}. Nodes are combined pairwise, level by level;
+ * an odd node at the end of a level is promoted to the next level unchanged.
+ * An empty file has a single leaf: {@code H(0x00)}.
+ * The result depends only on the algorithm, the chunk size and the file contents,
+ * not on the number of threads.
+ * </p>
+ */
+final class TreeHash {
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+
+    private final String algorithm;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    TreeHash(String algorithm, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive but was " + chunkSize);
+        }
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /** Returns the label that identifies digests produced with this algorithm and chunk size. */
+    String label() {
+        return label(algorithm, chunkSize);
+    }
+
+    static String label(String algorithm, int chunkSize) {
+        return "tree:" + algorithm.toUpperCase(Locale.ROOT) + ":" + chunkSize;
+    }
+
+    /**
+     * Creates a tree hash from a label as returned by {@link #label()}.
+     * @throws IllegalArgumentException if the label is not a valid tree hash label
+     */
+    static TreeHash fromLabel(String label, ForkJoinPool pool) {
+        String[] parts = label.split(":");
+        if (parts.length != 3 || !"tree".equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid tree hash label: " + label);
+        }
+        try {
+            return new TreeHash(parts[1], Integer.parseInt(parts[2]), pool);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid chunk size in tree hash label: " + label, ex);
+        }
+    }
+
+    byte[] digest(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int leafCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            byte[][] nodes = new byte[leafCount][];
+            try {
+                pool.invoke(new Leaves(channel, size, nodes, 0, leafCount));
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            return root(nodes, newDigest());
+        }
+    }
+
+    private static byte[] root(byte[][] nodes, Hasher md) {
+        int count = nodes.length;
+        while (count > 1) {
+            int next = 0;
+            for (int i = 0; i < count; i += 2) {
+                if (i + 1 == count) {
+                    nodes[next++] = nodes[i];
+                } else {
+                    md.update(NODE);
+                    md.update(nodes[i]);
+                    md.update(nodes[i + 1]);
+                    nodes[next++] = md.digest();
+                }
+            }
+            count = next;
+        }
+        return nodes[0];
+    }
+
+    private Hasher newDigest() {
+        try {
+            return Hasher.forName(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** Hashes the leaves in {@code [from, to)}, splitting the range until it is a single chunk. */
+    private final class Leaves extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final byte[][] leaves;
+        private final int from;
+        private final int to;
+
+        Leaves(FileChannel channel, long size, byte[][] leaves, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Leaves(channel, size, leaves, from, mid), new Leaves(channel, size, leaves, mid, to));
+                return;
+            }
+            long position = (long) from * chunkSize;
+            Hasher md = newDigest();
+            md.update(LEAF);
+            try {
+                if (size > position) {
+                    md.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position)));
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            leaves[from] = md.digest();
+        }
+    }
+}
@@ -0,0 +1,3 @@
+package picocli.nativeimage.demo;
+
+enum Type { FILE, DIRECTORY, LINK, OTHER }
@@ -0,0 +1,23 @@
+package picocli.nativeimage.demo;
+
+/** The totals of a directory tree. Not thread-safe: each is filled in by one task. */
+final class Usage {
+    static final long DEFAULT_BLOCK_SIZE = 4096;
+
+    long files;
+    /** The sum of the file sizes, in bytes. */
+    long apparent;
+    /** The sum of the file sizes, each rounded up to a multiple of the block size. */
+    long allocated;
+
+    void add(long size, long blockSize) {
+        apparent += size;
+        allocated += (size + blockSize - 1) / blockSize * blockSize;
+    }
+
+    void add(Usage other) {
+        files += other.files;
+        apparent += other.apparent;
+        allocated += other.allocated;
+    }
+}
@@ -0,0 +1,352 @@
+package picocli.nativeimage.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Lists a directory tree, reading directories in parallel on a fork/join pool. Unordered listings print entries
+ * as soon as they are read. Ordered listings print each directory sorted, depth first, like {@code ls -R};
+ * the subdirectories of a directory are read ahead in parallel, at most a few per thread at a time,
+ * so memory stays bounded by the depth of the tree rather than its size.
+ * <p>
+ * Symbolic links to directories are followed only if requested. When they are, the file keys of
+ * the directories above each directory are tracked, and a link back to one of them is reported as a loop.
+ * </p>
+ */
+final class Walker {
+    private final ForkJoinPool pool;
+    private final Sort sort;
+    private final boolean reverse;
+    private final int sortBuffer;
+    private final int maxDepth;
+    private final boolean follow;
+    private final Filter filter;
+    private final EntryWriter out;
+    private final int lookahead;
+    private final AtomicBoolean ok = new AtomicBoolean(true);
+    private boolean first = true;
+
+    Walker(ForkJoinPool pool, Sort sort, boolean reverse, int sortBuffer, int maxDepth, boolean follow, Filter filter, EntryWriter out) {
+        this.pool = pool;
+        this.sort = sort;
+        this.reverse = reverse;
+        this.sortBuffer = sortBuffer;
+        this.maxDepth = maxDepth;
+        this.follow = follow;
+        this.filter = filter;
+        this.out = out;
+        this.lookahead = 2 * pool.getParallelism();
+    }
+
+    /** Prints the tree one sorted directory at a time, and returns false if any directory could not be read. */
+    boolean printOrdered(File root) {
+        printTree(root, pool.submit(() -> list(root, null, 0)), 0);
+        return ok.get();
+    }
+
+    /**
+     * Prints the totals of each directory as soon as its subtree has been read, and then the heaviest directories.
+     * Returns false if any directory could not be read.
+     */
+    boolean printUsage(File root, long blockSize, int heaviest) {
+        Top<DirectoryUsage> top = new Top<>(heaviest, Comparator.comparingLong((DirectoryUsage d) -> d.usage.allocated).reversed());
+        pool.invoke(new UsageTask(root, null, 0, Entry.read(root).size, blockSize, top));
+        if (heaviest > 0) {
+            out.title("Heaviest directories:");
+            for (DirectoryUsage d : top.toList()) {
+                out.write(d.dir, d.usage);
+            }
+        }
+        return ok.get();
+    }
+
+    /** Prints the entries of the tree with their paths as they are read, and returns false if any directory could not be read. */
+    boolean printUnordered(File root) {
+        pool.invoke(new Task(root, null, 0, e -> out.write(e, true)));
+        return ok.get();
+    }
+
+    /** Prints the first {@code n} entries of the tree in sort order, with their paths, and returns false if any directory could not be read. */
+    boolean printTop(File root, int n) {
+        Top<Entry> first = new Top<>(n, reverse ? sort.order.reversed() : sort.order);
+        pool.invoke(new Task(root, null, 0, first::offer));
+        for (Entry e : first.toList()) {
+            out.write(e, true);
+        }
+        return ok.get();
+    }
+
+    private void printTree(File dir, Future<Listing> pending, int depth) {
+        Listing listing;
+        try {
+            listing = await(pending);
+        } catch (IOException ex) {
+            error(dir, ex);
+            return;
+        }
+        out.header(dir, first);
+        first = false;
+        try (ExternalSort entries = listing.entries) {
+            entries.forEach(e -> out.write(e, false));
+        } catch (IOException ex) {
+            error(dir, ex);
+        }
+        List<Entry> subdirectories = listing.subdirectories;
+        Deque<Future<Listing>> ahead = new ArrayDeque<>();
+        int submitted = 0;
+        for (Entry subdirectory : subdirectories) {
+            for (; submitted < subdirectories.size() && ahead.size() < lookahead; submitted++) {
+                File next = subdirectories.get(submitted).file;
+                ahead.add(pool.submit(() -> list(next, listing.ancestor, depth + 1)));
+            }
+            printTree(subdirectory.file, ahead.poll(), depth + 1);
+        }
+    }
+
+    /**
+     * Reads the entries of the directory that pass the filter, sorted, after checking that it is not one of
+     * its own ancestors. Its subdirectories are collected separately, in the same order, whether they pass or not.
+     */
+    private Listing list(File dir, Ancestor parent, int depth) throws IOException {
+        Ancestor ancestor = enter(dir, parent);
+        List<Entry> subdirectories = new ArrayList<>();
+        ExternalSort sorted = new ExternalSort(sort, reverse, sortBuffer, e -> {
+            if (descend(e, depth)) {
+                subdirectories.add(e);
+            }
+            return filter.test(e);
+        });
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir.toPath())) {
+            for (Path path : entries) {
+                if (depth < maxDepth || filter.acceptsName(path)) { // otherwise neither listed nor descended into
+                    sorted.add(path.toFile());
+                }
+            }
+            sorted.finish();
+        } catch (IOException | RuntimeException ex) {
+            sorted.close();
+            throw ex;
+        }
+        subdirectories.sort(reverse ? sort.order.reversed() : sort.order);
+        return new Listing(sorted, subdirectories, ancestor);
+    }
+
+    /** Returns the ancestor chain for the entries of the directory; only tracked when following links. */
+    private Ancestor enter(File dir, Ancestor parent) throws IOException {
+        if (!follow) {
+            return null; // without links, a walk cannot revisit a directory
+        }
+        Path path = dir.toPath();
+        Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        if (key == null) {
+            key = path.toRealPath();
+        }
+        for (Ancestor a = parent; a != null; a = a.parent) {
+            if (a.key.equals(key)) {
+                throw new FileSystemLoopException(dir.getPath());
+            }
+        }
+        return new Ancestor(key, parent);
+    }
+
+    private boolean descend(Entry e, int depth) {
+        return e.directory && (follow || !e.symbolicLink) && depth < maxDepth;
+    }
+
+    private void error(File file, IOException ex) {
+        ok.set(false);
+        out.flush();
+        System.err.printf("filelist: %s: %s%n", file, FileList.describe(ex));
+    }
+
+    private static Listing await(Future<Listing> listing) throws IOException {
+        try {
+            return listing.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing");
+        } catch (ExecutionException ex) {
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) { // fork/join wraps checked exceptions
+                    throw (IOException) cause;
+                }
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Lists one directory for an unordered walk, passing each entry to the sink as it is read,
+     * and forks a task for each subdirectory as soon as it is found. Each task has at most
+     * {@code 2 * parallelism} forked subtasks in flight: beyond that, the oldest is joined before another
+     * is forked. As every level of the tree may be that far ahead, at most {@code 2 * parallelism * depth}
+     * tasks are pending, however wide the tree is.
+     */
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+        private final Ancestor parent;
+        private final int depth;
+        private final Consumer<Entry> sink;
+
+        Task(File dir, Ancestor parent, int depth, Consumer<Entry> sink) {
+            this.dir = dir;
+            this.parent = parent;
+            this.depth = depth;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            Deque<Task> forked = new ArrayDeque<>();
+            try {
+                Ancestor ancestor = enter(dir, parent);
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir.toPath())) {
+                    for (Path path : entries) {
+                        boolean named = filter.acceptsName(path);
+                        if (!named && depth >= maxDepth) {
+                            continue; // neither listed nor descended into: no need to read its attributes
+                        }
+                        Entry e = Entry.read(path.toFile());
+                        if (named && filter.acceptsAttributes(e)) {
+                            sink.accept(e);
+                        }
+                        if (descend(e, depth)) {
+                            if (forked.size() == lookahead) {
+                                forked.poll().join();
+                            }
+                            Task task = new Task(e.file, ancestor, depth + 1, sink);
+                            task.fork();
+                            forked.add(task);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                error(dir, ex);
+            }
+            for (Task task : forked) {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * Totals one directory for a disk usage walk: forks a task for each subdirectory as soon as it is found,
+     * adds up the files, and then adds the totals of the subdirectories as their tasks complete.
+     * Only the totals travel up the tree, and as in {@link Task}, each task has at most {@code 2 * parallelism}
+     * subtasks in flight, so at most {@code 2 * parallelism * depth} tasks are pending, however wide the tree is.
+     */
+    private final class UsageTask extends RecursiveTask<Usage> {
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+        private final Ancestor parent;
+        private final int depth;
+        private final long size;
+        private final long blockSize;
+        private final Top<DirectoryUsage> top;
+
+        UsageTask(File dir, Ancestor parent, int depth, long size, long blockSize, Top<DirectoryUsage> top) {
+            this.dir = dir;
+            this.parent = parent;
+            this.depth = depth;
+            this.size = size;
+            this.blockSize = blockSize;
+            this.top = top;
+        }
+
+        @Override
+        protected Usage compute() {
+            Usage usage = new Usage();
+            Ancestor ancestor;
+            try {
+                ancestor = enter(dir, parent);
+            } catch (IOException ex) {
+                error(dir, ex);
+                return usage; // a loop: already counted
+            }
+            usage.add(size, blockSize);
+            Deque<UsageTask> forked = new ArrayDeque<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir.toPath())) {
+                for (Path path : entries) {
+                    Entry e = Entry.read(path.toFile());
+                    if (e.directory && (follow || !e.symbolicLink)) {
+                        if (forked.size() == lookahead) {
+                            usage.add(forked.poll().join());
+                        }
+                        UsageTask task = new UsageTask(e.file, ancestor, depth + 1, e.size, blockSize, top);
+                        task.fork();
+                        forked.add(task);
+                    } else {
+                        usage.files++;
+                        if (follow || !e.symbolicLink) { // links that are not followed count as empty files
+                            usage.add(e.size, blockSize);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                error(dir, ex);
+            }
+            for (UsageTask task : forked) {
+                usage.add(task.join());
+            }
+            if (depth <= maxDepth) {
+                out.write(dir, usage);
+            }
+            top.offer(new DirectoryUsage(dir, usage));
+            return usage;
+        }
+    }
+
+    private static final class DirectoryUsage {
+        final File dir;
+        final Usage usage;
+
+        DirectoryUsage(File dir, Usage usage) {
+            this.dir = dir;
+            this.usage = usage;
+        }
+    }
+
+    private static final class Listing {
+        final ExternalSort entries;
+        final List<Entry> subdirectories;
+        final Ancestor ancestor;
+
+        Listing(ExternalSort entries, List<Entry> subdirectories, Ancestor ancestor) {
+            this.entries = entries;
+            this.subdirectories = subdirectories;
+            this.ancestor = ancestor;
+        }
+    }
+
+    /** The file key of a directory on the path from the root, linked to that of its parent. */
+    private static final class Ancestor {
+        final Object key;
+        final Ancestor parent;
+
+        Ancestor(Object key, Ancestor parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+    }
+}
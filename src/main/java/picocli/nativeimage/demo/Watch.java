@@ -0,0 +1,132 @@
+package picocli.nativeimage.demo;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a sorted listing of one directory up to date with the events of a {@link WatchService}, and prints
+ * each change, or redraws the listing. Entries are kept in an {@link OrderStatisticTree}, so the position of
+ * a change in the listing is found in logarithmic time, without sorting the directory again.
+ * When events were lost, the directory is read again, and only the differences are printed.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+final class Watch {
+    private final Path dir;
+    private final Filter filter;
+    private final EntryWriter out;
+    private final boolean redraw;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final OrderStatisticTree<Entry> view;
+
+    Watch(Path dir, Comparator<Entry> order, Filter filter, EntryWriter out, boolean redraw) {
+        this.dir = dir;
+        this.filter = filter;
+        this.out = out;
+        this.redraw = redraw;
+        this.view = new OrderStatisticTree<>(order.thenComparing(e -> e.name)); // names are unique
+    }
+
+    /** Reads the directory and updates the view, printing the changes if requested. */
+    void scan(boolean report) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                names.add(name);
+                update(name, report);
+            }
+        }
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            String name = it.next();
+            if (!names.contains(name)) {
+                Entry old = entries.get(name);
+                it.remove();
+                changed('-', view.remove(old), old, report);
+            }
+        }
+    }
+
+    /** Prints the whole listing. */
+    void print() {
+        for (Entry e : view) {
+            out.write(e, false);
+        }
+    }
+
+    /** Applies events until the thread is interrupted or the directory can no longer be watched. */
+    void run(WatchService service) throws IOException, InterruptedException {
+        while (true) {
+            WatchKey key = service.take();
+            apply(key.pollEvents());
+            if (redraw) {
+                out.clearScreen();
+                print();
+            }
+            out.flush();
+            if (!key.reset()) {
+                return; // the directory is gone
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of events. Each name is read again once, however many events it has in the batch, so that
+     * a file that is created and then written shows up once, with its current attributes, rather than first empty.
+     * When events were lost, the whole directory is read again instead.
+     */
+    void apply(List<WatchEvent<?>> events) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                scan(!redraw);
+                return;
+            }
+            names.add(((Path) event.context()).toString());
+        }
+        for (String name : names) {
+            update(name, !redraw);
+        }
+    }
+
+    /** Reads the entry with the name again, and moves it in the view, or adds or removes it. */
+    void update(String name, boolean report) {
+        Path path = dir.resolve(name);
+        Entry e = filter.acceptsName(path) && Files.exists(path, LinkOption.NOFOLLOW_LINKS) ? Entry.read(path.toFile()) : null;
+        if (e != null && !filter.acceptsAttributes(e)) {
+            e = null;
+        }
+        Entry old = e == null ? entries.remove(name) : entries.put(name, e);
+        if (old != null && e != null && old.size == e.size && old.lastModified == e.lastModified && old.type() == e.type()) {
+            return; // nothing that is listed has changed
+        }
+        if (old != null) {
+            changed('-', view.remove(old), old, report);
+        }
+        if (e != null) {
+            changed('+', view.add(e), e, report);
+        }
+    }
+
+    private void changed(char marker, int position, Entry e, boolean report) {
+        if (report) {
+            out.change(marker, position, e);
+        }
+    }
+}
@@ -21,15 +21,101 @@ class CheckSumImageTest {
         Process process = new ProcessBuilder(executable(), "--help").start();
 
         String expected = String.format("" +
-                "Usage: checksum [-hV] [-a=<algorithm>] [@<filename>...] <file>%n" +
-                "Prints the checksum (MD5 by default) of a file to STDOUT.%n" +
-                "      [@<filename>...]   One or more argument files containing options.%n" +
-                "      <file>             The file whose checksum to calculate, or '-' to read%n" +
-                "                           from the standard input stream.%n" +
-                "  -a, --algorithm=<algorithm>%n" +
-                "                         MD5, SHA-1, SHA-256, ...%n" +
-                "  -h, --help             Show this help message and exit.%n" +
-                "  -V, --version          Print version information and exit.%n");
+                "Usage: checksum [-chVz] [--dedup] [--duplicates] [--fail-fast] [--incremental]%n" +
+                "                [--names] [--stats] [--stdin-paths] [--tee] [--tree]%n" +
+                "                [--average-chunk-size=<averageChunkSize>]%n" +
+                "                [--buffer-size=<bufferSize>] [--cache=<cacheFile>]%n" +
+                "                [--chunk-size=<chunkSize>] [--io=<mode>] [-j=<threads>]%n" +
+                "                [--output-format=<format>] [--queue-depth=<queueDepth>]%n" +
+                "                [--stats-format=<format>] [-a=<algorithm>[,<algorithm>...]]...%n" +
+                "                [@<filename>...] [<files>...]%n" +
+                "Prints the checksum (MD5 by default) of one or more files to STDOUT.%n" +
+                "      [@<filename>...]      One or more argument files containing options.%n" +
+                "      [<files>...]          The files whose checksum to calculate, or '-' to%n" +
+                "                              read from the standard input stream.%n" +
+                "                            With --check, the manifests with checksums to%n" +
+                "                              verify. With --duplicates, the directories to%n" +
+                "                              search.%n" +
+                "  -a, --algorithm=<algorithm>[,<algorithm>...]%n" +
+                "                            MD5, SHA-1, SHA-256, ..., or one of the fast%n" +
+                "                              checksums CRC32, CRC32C, ADLER32, XXH64.%n" +
+                "                            Specify a comma-separated list to compute several%n" +
+                "                              digests in a single pass.%n" +
+                "      --average-chunk-size=<averageChunkSize>%n" +
+                "                            Average chunk size in bytes for --dedup, a power of%n" +
+                "                              two. Default: 8192.%n" +
+                "      --buffer-size=<bufferSize>%n" +
+                "                            Read buffer size in bytes. Default: 65536.%n" +
+                "  -c, --check               Read checksums from the files and verify them, in%n" +
+                "                              parallel.%n" +
+                "                            Each line must name its file, as the output for%n" +
+                "                              several files or with --names does.%n" +
+                "      --cache=<cacheFile>   Cache digests in this file, keyed on path, size,%n" +
+                "                              modification time and inode. Unchanged files are%n" +
+                "                              not read again.%n" +
+                "      --chunk-size=<chunkSize>%n" +
+                "                            Chunk size in bytes for --tree. Default: 1048576.%n" +
+                "      --dedup               Split the files into content-defined chunks and%n" +
+                "                              print the number of chunks and bytes of each%n" +
+                "                              file, in total and unique across all files, and%n" +
+                "                              the estimated deduplication ratio.%n" +
+                "                            Chunks are identified by their digest with the%n" +
+                "                              first algorithm.%n" +
+                "      --duplicates          Find files with identical contents in the given%n" +
+                "                              directories and print them in groups, separated%n" +
+                "                              by blank lines.%n" +
+                "                            Files are compared by size first, then by their%n" +
+                "                              first and last bytes, and only the remaining%n" +
+                "                              candidates are fully hashed.%n" +
+                "      --fail-fast           Stop at the first file that cannot be read or, with%n" +
+                "                              --check, does not match.%n" +
+                "  -h, --help                Show this help message and exit.%n" +
+                "      --incremental         For files that only grow, such as logs: save the%n" +
+                "                              digest state to a sidecar file <file>.ckstate and%n" +
+                "                              on the next run hash only the bytes appended%n" +
+                "                              since.%n" +
+                "                            The whole file is hashed again if its inode%n" +
+                "                              changed, it got shorter, or a sample of the%n" +
+                "                              hashed part changed. Supports CRC32C, XXH64 and%n" +
+                "                              SHA-256.%n" +
+                "      --io=<mode>           How files are read: AUTO, CHANNEL, MMAP, ASYNC.%n" +
+                "                              Default: AUTO.%n" +
+                "                            AUTO memory-maps large files and reads small files%n" +
+                "                              through a buffer; ASYNC keeps several reads in%n" +
+                "                              flight, for fast storage such as NVMe.%n" +
+                "  -j, --threads=<threads>   Number of files to hash in parallel. Default:%n" +
+                "                              number of processors.%n" +
+                "      --names               Print the path after each checksum, even for a%n" +
+                "                              single file, so the output can be verified with%n" +
+                "                              --check.%n" +
+                "      --output-format=<format>%n" +
+                "                            How checksums are printed: HEX, BASE64, RAW. RAW%n" +
+                "                              writes only the binary digests. Default: HEX.%n" +
+                "      --queue-depth=<queueDepth>%n" +
+                "                            Number of reads in flight per file with --io=ASYNC.%n" +
+                "                              Default: 8.%n" +
+                "      --stats               Print the bytes, time spent reading and digesting,%n" +
+                "                              and throughput of each file, and totals, to%n" +
+                "                              STDERR.%n" +
+                "                            Also prints cache hit and miss counts, with%n" +
+                "                              --incremental the files resumed, with%n" +
+                "                              --duplicates the number of files read, and with%n" +
+                "                              --dedup the chunk index runs spilled to disk.%n" +
+                "      --stats-format=<format>%n" +
+                "                            Format of --stats: TEXT, JSON. Default: TEXT.%n" +
+                "      --stdin-paths         Keep running and read the paths of the files to%n" +
+                "                              hash from STDIN, printing a line per file as soon%n" +
+                "                              as it is hashed.%n" +
+                "                            Paths are read as UTF-8. Buffers and digests are%n" +
+                "                              reused across files.%n" +
+                "      --tee                 Copy the input to STDOUT while hashing it, and%n" +
+                "                              print the checksum to STDERR. Requires a single%n" +
+                "                              file or '-'.%n" +
+                "      --tree                Compute a Merkle tree hash over fixed-size chunks%n" +
+                "                              of each file, hashing the chunks in parallel.%n" +
+                "  -V, --version             Print version information and exit.%n" +
+                "  -z, --null                With --stdin-paths, paths are separated by NUL%n" +
+                "                              characters instead of newlines.%n");
         assertEquals(expected, getStdOut(process));
         assertEquals("", getStdErr(process));
         process.waitFor(3, TimeUnit.SECONDS);
@@ -108,16 +194,102 @@ class CheckSumImageTest {
         Process process = new ProcessBuilder(executable()).start();
 
         String expected = String.format("" +
-                "Missing required parameter: '<file>'%n" +
-                "Usage: checksum [-hV] [-a=<algorithm>] [@<filename>...] <file>%n" +
-                "Prints the checksum (MD5 by default) of a file to STDOUT.%n" +
-                "      [@<filename>...]   One or more argument files containing options.%n" +
-                "      <file>             The file whose checksum to calculate, or '-' to read%n" +
-                "                           from the standard input stream.%n" +
-                "  -a, --algorithm=<algorithm>%n" +
-                "                         MD5, SHA-1, SHA-256, ...%n" +
-                "  -h, --help             Show this help message and exit.%n" +
-                "  -V, --version          Print version information and exit.%n");
+                "Missing required parameter: '<files>'%n" +
+                "Usage: checksum [-chVz] [--dedup] [--duplicates] [--fail-fast] [--incremental]%n" +
+                "                [--names] [--stats] [--stdin-paths] [--tee] [--tree]%n" +
+                "                [--average-chunk-size=<averageChunkSize>]%n" +
+                "                [--buffer-size=<bufferSize>] [--cache=<cacheFile>]%n" +
+                "                [--chunk-size=<chunkSize>] [--io=<mode>] [-j=<threads>]%n" +
+                "                [--output-format=<format>] [--queue-depth=<queueDepth>]%n" +
+                "                [--stats-format=<format>] [-a=<algorithm>[,<algorithm>...]]...%n" +
+                "                [@<filename>...] [<files>...]%n" +
+                "Prints the checksum (MD5 by default) of one or more files to STDOUT.%n" +
+                "      [@<filename>...]      One or more argument files containing options.%n" +
+                "      [<files>...]          The files whose checksum to calculate, or '-' to%n" +
+                "                              read from the standard input stream.%n" +
+                "                            With --check, the manifests with checksums to%n" +
+                "                              verify. With --duplicates, the directories to%n" +
+                "                              search.%n" +
+                "  -a, --algorithm=<algorithm>[,<algorithm>...]%n" +
+                "                            MD5, SHA-1, SHA-256, ..., or one of the fast%n" +
+                "                              checksums CRC32, CRC32C, ADLER32, XXH64.%n" +
+                "                            Specify a comma-separated list to compute several%n" +
+                "                              digests in a single pass.%n" +
+                "      --average-chunk-size=<averageChunkSize>%n" +
+                "                            Average chunk size in bytes for --dedup, a power of%n" +
+                "                              two. Default: 8192.%n" +
+                "      --buffer-size=<bufferSize>%n" +
+                "                            Read buffer size in bytes. Default: 65536.%n" +
+                "  -c, --check               Read checksums from the files and verify them, in%n" +
+                "                              parallel.%n" +
+                "                            Each line must name its file, as the output for%n" +
+                "                              several files or with --names does.%n" +
+                "      --cache=<cacheFile>   Cache digests in this file, keyed on path, size,%n" +
+                "                              modification time and inode. Unchanged files are%n" +
+                "                              not read again.%n" +
+                "      --chunk-size=<chunkSize>%n" +
+                "                            Chunk size in bytes for --tree. Default: 1048576.%n" +
+                "      --dedup               Split the files into content-defined chunks and%n" +
+                "                              print the number of chunks and bytes of each%n" +
+                "                              file, in total and unique across all files, and%n" +
+                "                              the estimated deduplication ratio.%n" +
+                "                            Chunks are identified by their digest with the%n" +
+                "                              first algorithm.%n" +
+                "      --duplicates          Find files with identical contents in the given%n" +
+                "                              directories and print them in groups, separated%n" +
+                "                              by blank lines.%n" +
+                "                            Files are compared by size first, then by their%n" +
+                "                              first and last bytes, and only the remaining%n" +
+                "                              candidates are fully hashed.%n" +
+                "      --fail-fast           Stop at the first file that cannot be read or, with%n" +
+                "                              --check, does not match.%n" +
+                "  -h, --help                Show this help message and exit.%n" +
+                "      --incremental         For files that only grow, such as logs: save the%n" +
+                "                              digest state to a sidecar file <file>.ckstate and%n" +
+                "                              on the next run hash only the bytes appended%n" +
+                "                              since.%n" +
+                "                            The whole file is hashed again if its inode%n" +
+                "                              changed, it got shorter, or a sample of the%n" +
+                "                              hashed part changed. Supports CRC32C, XXH64 and%n" +
+                "                              SHA-256.%n" +
+                "      --io=<mode>           How files are read: AUTO, CHANNEL, MMAP, ASYNC.%n" +
+                "                              Default: AUTO.%n" +
+                "                            AUTO memory-maps large files and reads small files%n" +
+                "                              through a buffer; ASYNC keeps several reads in%n" +
+                "                              flight, for fast storage such as NVMe.%n" +
+                "  -j, --threads=<threads>   Number of files to hash in parallel. Default:%n" +
+                "                              number of processors.%n" +
+                "      --names               Print the path after each checksum, even for a%n" +
+                "                              single file, so the output can be verified with%n" +
+                "                              --check.%n" +
+                "      --output-format=<format>%n" +
+                "                            How checksums are printed: HEX, BASE64, RAW. RAW%n" +
+                "                              writes only the binary digests. Default: HEX.%n" +
+                "      --queue-depth=<queueDepth>%n" +
+                "                            Number of reads in flight per file with --io=ASYNC.%n" +
+                "                              Default: 8.%n" +
+                "      --stats               Print the bytes, time spent reading and digesting,%n" +
+                "                              and throughput of each file, and totals, to%n" +
+                "                              STDERR.%n" +
+                "                            Also prints cache hit and miss counts, with%n" +
+                "                              --incremental the files resumed, with%n" +
+                "                              --duplicates the number of files read, and with%n" +
+                "                              --dedup the chunk index runs spilled to disk.%n" +
+                "      --stats-format=<format>%n" +
+                "                            Format of --stats: TEXT, JSON. Default: TEXT.%n" +
+                "      --stdin-paths         Keep running and read the paths of the files to%n" +
+                "                              hash from STDIN, printing a line per file as soon%n" +
+                "                              as it is hashed.%n" +
+                "                            Paths are read as UTF-8. Buffers and digests are%n" +
+                "                              reused across files.%n" +
+                "      --tee                 Copy the input to STDOUT while hashing it, and%n" +
+                "                              print the checksum to STDERR. Requires a single%n" +
+                "                              file or '-'.%n" +
+                "      --tree                Compute a Merkle tree hash over fixed-size chunks%n" +
+                "                              of each file, hashing the chunks in parallel.%n" +
+                "  -V, --version             Print version information and exit.%n" +
+                "  -z, --null                With --stdin-paths, paths are separated by NUL%n" +
+                "                              characters instead of newlines.%n");
         assertEquals(expected, getStdErr(process));
         assertEquals("", getStdOut(process));
         process.waitFor(3, TimeUnit.SECONDS);
@@ -132,15 +304,101 @@ class CheckSumImageTest {
 
         String expected = String.format("" +
                 "Unknown option: '--unknown'%n" +
-                "Usage: checksum [-hV] [-a=<algorithm>] [@<filename>...] <file>%n" +
-                "Prints the checksum (MD5 by default) of a file to STDOUT.%n" +
-                "      [@<filename>...]   One or more argument files containing options.%n" +
-                "      <file>             The file whose checksum to calculate, or '-' to read%n" +
-                "                           from the standard input stream.%n" +
-                "  -a, --algorithm=<algorithm>%n" +
-                "                         MD5, SHA-1, SHA-256, ...%n" +
-                "  -h, --help             Show this help message and exit.%n" +
-                "  -V, --version          Print version information and exit.%n");
+                "Usage: checksum [-chVz] [--dedup] [--duplicates] [--fail-fast] [--incremental]%n" +
+                "                [--names] [--stats] [--stdin-paths] [--tee] [--tree]%n" +
+                "                [--average-chunk-size=<averageChunkSize>]%n" +
+                "                [--buffer-size=<bufferSize>] [--cache=<cacheFile>]%n" +
+                "                [--chunk-size=<chunkSize>] [--io=<mode>] [-j=<threads>]%n" +
+                "                [--output-format=<format>] [--queue-depth=<queueDepth>]%n" +
+                "                [--stats-format=<format>] [-a=<algorithm>[,<algorithm>...]]...%n" +
+                "                [@<filename>...] [<files>...]%n" +
+                "Prints the checksum (MD5 by default) of one or more files to STDOUT.%n" +
+                "      [@<filename>...]      One or more argument files containing options.%n" +
+                "      [<files>...]          The files whose checksum to calculate, or '-' to%n" +
+                "                              read from the standard input stream.%n" +
+                "                            With --check, the manifests with checksums to%n" +
+                "                              verify. With --duplicates, the directories to%n" +
+                "                              search.%n" +
+                "  -a, --algorithm=<algorithm>[,<algorithm>...]%n" +
+                "                            MD5, SHA-1, SHA-256, ..., or one of the fast%n" +
+                "                              checksums CRC32, CRC32C, ADLER32, XXH64.%n" +
+                "                            Specify a comma-separated list to compute several%n" +
+                "                              digests in a single pass.%n" +
+                "      --average-chunk-size=<averageChunkSize>%n" +
+                "                            Average chunk size in bytes for --dedup, a power of%n" +
+                "                              two. Default: 8192.%n" +
+                "      --buffer-size=<bufferSize>%n" +
+                "                            Read buffer size in bytes. Default: 65536.%n" +
+                "  -c, --check               Read checksums from the files and verify them, in%n" +
+                "                              parallel.%n" +
+                "                            Each line must name its file, as the output for%n" +
+                "                              several files or with --names does.%n" +
+                "      --cache=<cacheFile>   Cache digests in this file, keyed on path, size,%n" +
+                "                              modification time and inode. Unchanged files are%n" +
+                "                              not read again.%n" +
+                "      --chunk-size=<chunkSize>%n" +
+                "                            Chunk size in bytes for --tree. Default: 1048576.%n" +
+                "      --dedup               Split the files into content-defined chunks and%n" +
+                "                              print the number of chunks and bytes of each%n" +
+                "                              file, in total and unique across all files, and%n" +
+                "                              the estimated deduplication ratio.%n" +
+                "                            Chunks are identified by their digest with the%n" +
+                "                              first algorithm.%n" +
+                "      --duplicates          Find files with identical contents in the given%n" +
+                "                              directories and print them in groups, separated%n" +
+                "                              by blank lines.%n" +
+                "                            Files are compared by size first, then by their%n" +
+                "                              first and last bytes, and only the remaining%n" +
+                "                              candidates are fully hashed.%n" +
+                "      --fail-fast           Stop at the first file that cannot be read or, with%n" +
+                "                              --check, does not match.%n" +
+                "  -h, --help                Show this help message and exit.%n" +
+                "      --incremental         For files that only grow, such as logs: save the%n" +
+                "                              digest state to a sidecar file <file>.ckstate and%n" +
+                "                              on the next run hash only the bytes appended%n" +
+                "                              since.%n" +
+                "                            The whole file is hashed again if its inode%n" +
+                "                              changed, it got shorter, or a sample of the%n" +
+                "                              hashed part changed. Supports CRC32C, XXH64 and%n" +
+                "                              SHA-256.%n" +
+                "      --io=<mode>           How files are read: AUTO, CHANNEL, MMAP, ASYNC.%n" +
+                "                              Default: AUTO.%n" +
+                "                            AUTO memory-maps large files and reads small files%n" +
+                "                              through a buffer; ASYNC keeps several reads in%n" +
+                "                              flight, for fast storage such as NVMe.%n" +
+                "  -j, --threads=<threads>   Number of files to hash in parallel. Default:%n" +
+                "                              number of processors.%n" +
+                "      --names               Print the path after each checksum, even for a%n" +
+                "                              single file, so the output can be verified with%n" +
+                "                              --check.%n" +
+                "      --output-format=<format>%n" +
+                "                            How checksums are printed: HEX, BASE64, RAW. RAW%n" +
+                "                              writes only the binary digests. Default: HEX.%n" +
+                "      --queue-depth=<queueDepth>%n" +
+                "                            Number of reads in flight per file with --io=ASYNC.%n" +
+                "                              Default: 8.%n" +
+                "      --stats               Print the bytes, time spent reading and digesting,%n" +
+                "                              and throughput of each file, and totals, to%n" +
+                "                              STDERR.%n" +
+                "                            Also prints cache hit and miss counts, with%n" +
+                "                              --incremental the files resumed, with%n" +
+                "                              --duplicates the number of files read, and with%n" +
+                "                              --dedup the chunk index runs spilled to disk.%n" +
+                "      --stats-format=<format>%n" +
+                "                            Format of --stats: TEXT, JSON. Default: TEXT.%n" +
+                "      --stdin-paths         Keep running and read the paths of the files to%n" +
+                "                              hash from STDIN, printing a line per file as soon%n" +
+                "                              as it is hashed.%n" +
+                "                            Paths are read as UTF-8. Buffers and digests are%n" +
+                "                              reused across files.%n" +
+                "      --tee                 Copy the input to STDOUT while hashing it, and%n" +
+                "                              print the checksum to STDERR. Requires a single%n" +
+                "                              file or '-'.%n" +
+                "      --tree                Compute a Merkle tree hash over fixed-size chunks%n" +
+                "                              of each file, hashing the chunks in parallel.%n" +
+                "  -V, --version             Print version information and exit.%n" +
+                "  -z, --null                With --stdin-paths, paths are separated by NUL%n" +
+                "                              characters instead of newlines.%n");
         assertEquals(expected, getStdErr(process));
         assertEquals("", getStdOut(process));
         process.waitFor(3, TimeUnit.SECONDS);
@@ -2,15 +2,22 @@ package picocli.nativeimage.demo;
 
 import picocli.CommandLine;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class CheckSumTest {
     
@@ -23,16 +30,102 @@ public class CheckSumTest {
             new CommandLine(new CheckSum()).execute();
             
             String expected = String.format("" +
-                    "Missing required parameter: '<file>'%n" +
-                    "Usage: checksum [-hV] [-a=<algorithm>] [@<filename>...] <file>%n" +
-                    "Prints the checksum (MD5 by default) of a file to STDOUT.%n" +
-                    "      [@<filename>...]   One or more argument files containing options.%n" +
-                    "      <file>             The file whose checksum to calculate, or '-' to read%n" +
-                    "                           from the standard input stream.%n" +
-                    "  -a, --algorithm=<algorithm>%n" +
-                    "                         MD5, SHA-1, SHA-256, ...%n" +
-                    "  -h, --help             Show this help message and exit.%n" +
-                    "  -V, --version          Print version information and exit.%n");
+                    "Missing required parameter: '<files>'%n" +
+                    "Usage: checksum [-chVz] [--dedup] [--duplicates] [--fail-fast] [--incremental]%n" +
+                    "                [--names] [--stats] [--stdin-paths] [--tee] [--tree]%n" +
+                    "                [--average-chunk-size=<averageChunkSize>]%n" +
+                    "                [--buffer-size=<bufferSize>] [--cache=<cacheFile>]%n" +
+                    "                [--chunk-size=<chunkSize>] [--io=<mode>] [-j=<threads>]%n" +
+                    "                [--output-format=<format>] [--queue-depth=<queueDepth>]%n" +
+                    "                [--stats-format=<format>] [-a=<algorithm>[,<algorithm>...]]...%n" +
+                    "                [@<filename>...] [<files>...]%n" +
+                    "Prints the checksum (MD5 by default) of one or more files to STDOUT.%n" +
+                    "      [@<filename>...]      One or more argument files containing options.%n" +
+                    "      [<files>...]          The files whose checksum to calculate, or '-' to%n" +
+                    "                              read from the standard input stream.%n" +
+                    "                            With --check, the manifests with checksums to%n" +
+                    "                              verify. With --duplicates, the directories to%n" +
+                    "                              search.%n" +
+                    "  -a, --algorithm=<algorithm>[,<algorithm>...]%n" +
+                    "                            MD5, SHA-1, SHA-256, ..., or one of the fast%n" +
+                    "                              checksums CRC32, CRC32C, ADLER32, XXH64.%n" +
+                    "                            Specify a comma-separated list to compute several%n" +
+                    "                              digests in a single pass.%n" +
+                    "      --average-chunk-size=<averageChunkSize>%n" +
+                    "                            Average chunk size in bytes for --dedup, a power of%n" +
+                    "                              two. Default: 8192.%n" +
+                    "      --buffer-size=<bufferSize>%n" +
+                    "                            Read buffer size in bytes. Default: 65536.%n" +
+                    "  -c, --check               Read checksums from the files and verify them, in%n" +
+                    "                              parallel.%n" +
+                    "                            Each line must name its file, as the output for%n" +
+                    "                              several files or with --names does.%n" +
+                    "      --cache=<cacheFile>   Cache digests in this file, keyed on path, size,%n" +
+                    "                              modification time and inode. Unchanged files are%n" +
+                    "                              not read again.%n" +
+                    "      --chunk-size=<chunkSize>%n" +
+                    "                            Chunk size in bytes for --tree. Default: 1048576.%n" +
+                    "      --dedup               Split the files into content-defined chunks and%n" +
+                    "                              print the number of chunks and bytes of each%n" +
+                    "                              file, in total and unique across all files, and%n" +
+                    "                              the estimated deduplication ratio.%n" +
+                    "                            Chunks are identified by their digest with the%n" +
+                    "                              first algorithm.%n" +
+                    "      --duplicates          Find files with identical contents in the given%n" +
+                    "                              directories and print them in groups, separated%n" +
+                    "                              by blank lines.%n" +
+                    "                            Files are compared by size first, then by their%n" +
+                    "                              first and last bytes, and only the remaining%n" +
+                    "                              candidates are fully hashed.%n" +
+                    "      --fail-fast           Stop at the first file that cannot be read or, with%n" +
+                    "                              --check, does not match.%n" +
+                    "  -h, --help                Show this help message and exit.%n" +
+                    "      --incremental         For files that only grow, such as logs: save the%n" +
+                    "                              digest state to a sidecar file <file>.ckstate and%n" +
+                    "                              on the next run hash only the bytes appended%n" +
+                    "                              since.%n" +
+                    "                            The whole file is hashed again if its inode%n" +
+                    "                              changed, it got shorter, or a sample of the%n" +
+                    "                              hashed part changed. Supports CRC32C, XXH64 and%n" +
+                    "                              SHA-256.%n" +
+                    "      --io=<mode>           How files are read: AUTO, CHANNEL, MMAP, ASYNC.%n" +
+                    "                              Default: AUTO.%n" +
+                    "                            AUTO memory-maps large files and reads small files%n" +
+                    "                              through a buffer; ASYNC keeps several reads in%n" +
+                    "                              flight, for fast storage such as NVMe.%n" +
+                    "  -j, --threads=<threads>   Number of files to hash in parallel. Default:%n" +
+                    "                              number of processors.%n" +
+                    "      --names               Print the path after each checksum, even for a%n" +
+                    "                              single file, so the output can be verified with%n" +
+                    "                              --check.%n" +
+                    "      --output-format=<format>%n" +
+                    "                            How checksums are printed: HEX, BASE64, RAW. RAW%n" +
+                    "                              writes only the binary digests. Default: HEX.%n" +
+                    "      --queue-depth=<queueDepth>%n" +
+                    "                            Number of reads in flight per file with --io=ASYNC.%n" +
+                    "                              Default: 8.%n" +
+                    "      --stats               Print the bytes, time spent reading and digesting,%n" +
+                    "                              and throughput of each file, and totals, to%n" +
+                    "                              STDERR.%n" +
+                    "                            Also prints cache hit and miss counts, with%n" +
+                    "                              --incremental the files resumed, with%n" +
+                    "                              --duplicates the number of files read, and with%n" +
+                    "                              --dedup the chunk index runs spilled to disk.%n" +
+                    "      --stats-format=<format>%n" +
+                    "                            Format of --stats: TEXT, JSON. Default: TEXT.%n" +
+                    "      --stdin-paths         Keep running and read the paths of the files to%n" +
+                    "                              hash from STDIN, printing a line per file as soon%n" +
+                    "                              as it is hashed.%n" +
+                    "                            Paths are read as UTF-8. Buffers and digests are%n" +
+                    "                              reused across files.%n" +
+                    "      --tee                 Copy the input to STDOUT while hashing it, and%n" +
+                    "                              print the checksum to STDERR. Requires a single%n" +
+                    "                              file or '-'.%n" +
+                    "      --tree                Compute a Merkle tree hash over fixed-size chunks%n" +
+                    "                              of each file, hashing the chunks in parallel.%n" +
+                    "  -V, --version             Print version information and exit.%n" +
+                    "  -z, --null                With --stdin-paths, paths are separated by NUL%n" +
+                    "                              characters instead of newlines.%n");
             assertEquals(expected, baos.toString());
         } finally {
             System.setErr(oldErr);
@@ -59,6 +152,343 @@ public class CheckSumTest {
         }
     }
 
+    @Test
+    public void testMultipleFilesPrintedInInputOrder() throws IOException {
+        File first = NativeImageHelper.createTempDataFile();
+        File second = File.createTempFile("checksum", "test");
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(baos));
+            int exitCode = new CommandLine(new CheckSum()).execute("-j", "2",
+                    first.getAbsolutePath(), second.getAbsolutePath(), first.getAbsolutePath());
+
+            String expected = String.format("" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %1$s%n" +
+                    "d41d8cd98f00b204e9800998ecf8427e  %2$s%n" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %1$s%n", first.getAbsolutePath(), second.getAbsolutePath());
+            assertEquals(expected, baos.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            first.delete();
+            second.delete();
+        }
+    }
+
+    @Test
+    public void testUnreadableFileGivesExitCode1() throws IOException {
+        File tempFile = NativeImageHelper.createTempDataFile();
+        File missing = new File(tempFile.getAbsolutePath() + ".missing");
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            int exitCode = new CommandLine(new CheckSum()).execute(
+                    missing.getAbsolutePath(), tempFile.getAbsolutePath());
+
+            assertEquals(String.format("764efa883dda1e11db47671c4a3bbd9e  %s%n", tempFile.getAbsolutePath()), out.toString());
+            assertEquals(String.format("checksum: %s: No such file or directory%n", missing.getAbsolutePath()), err.toString());
+            assertEquals(1, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testCheckReportsOkAndFailedPerFile() throws IOException {
+        File good = NativeImageHelper.createTempDataFile();
+        File bad = NativeImageHelper.createTempDataFile();
+        File manifest = File.createTempFile("checksum", "manifest");
+        Files.write(manifest.toPath(), String.format("" +
+                "764efa883dda1e11db47671c4a3bbd9e  %s%n" +
+                "d41d8cd98f00b204e9800998ecf8427e *%s%n", good.getAbsolutePath(), bad.getAbsolutePath()).getBytes());
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            int exitCode = new CommandLine(new CheckSum()).execute("--check", manifest.getAbsolutePath());
+
+            String expected = String.format("" +
+                    "%s: OK%n" +
+                    "%s: FAILED%n", good.getAbsolutePath(), bad.getAbsolutePath());
+            assertEquals(expected, out.toString());
+            assertEquals(String.format("checksum: WARNING: 1 computed checksum did NOT match%n"), err.toString());
+            assertEquals(1, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            good.delete();
+            bad.delete();
+            manifest.delete();
+        }
+    }
+
+    @Test
+    public void testCheckFailsIfManifestHasNoProperlyFormattedLines() throws IOException {
+        File manifest = File.createTempFile("checksum", "manifest");
+        Files.write(manifest.toPath(), String.format("garbage%n").getBytes());
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            int exitCode = new CommandLine(new CheckSum()).execute("--check", manifest.getAbsolutePath());
+
+            assertEquals("", out.toString());
+            String expected = String.format("" +
+                    "checksum: %s: 1: improperly formatted checksum line%n" +
+                    "checksum: %s: no properly formatted checksum lines found%n", manifest.getAbsolutePath(), manifest.getAbsolutePath());
+            assertEquals(expected, err.toString());
+            assertEquals(1, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            manifest.delete();
+        }
+    }
+
+    @Test
+    public void testNamesWritesManifestOfSingleFileThatCheckVerifies() throws IOException {
+        File tempFile = NativeImageHelper.createTempDataFile();
+        File manifest = File.createTempFile("checksum", "manifest");
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        try {
+            for (String[] options : new String[][] {{"--names"}, {"--names", "--tree"}}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(out));
+                System.setErr(new PrintStream(err));
+                String[] args = Arrays.copyOf(options, options.length + 1);
+                args[options.length] = tempFile.getAbsolutePath();
+                assertEquals(0, new CommandLine(new CheckSum()).execute(args));
+                assertTrue(out.toString().trim().endsWith("  " + tempFile.getAbsolutePath()), out.toString());
+                Files.write(manifest.toPath(), out.toByteArray());
+
+                out.reset();
+                int exitCode = new CommandLine(new CheckSum()).execute("--check", manifest.getAbsolutePath());
+
+                assertEquals(String.format("%s: OK%n", tempFile.getAbsolutePath()), out.toString());
+                assertEquals("", err.toString());
+                assertEquals(0, exitCode);
+            }
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            tempFile.delete();
+            manifest.delete();
+        }
+    }
+
+    @Test
+    public void testCheckVerifiesManifestWithNonAsciiPath() throws IOException {
+        String name = "r\u00e9sum\u00e9-\u65e5\u672c.txt";
+        // file names the JVM cannot encode, as in the C locale, cannot be created at all
+        assumeTrue(Charset.forName(System.getProperty("sun.jnu.encoding", Charset.defaultCharset().name())).newEncoder().canEncode(name));
+        File dir = Files.createTempDirectory("checksum").toFile();
+        File file = new File(dir, name);
+        Files.write(file.toPath(), "hello".getBytes());
+        File manifest = new File(dir, "manifest");
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            assertEquals(0, new CommandLine(new CheckSum()).execute("--names", file.getAbsolutePath()));
+            Files.write(manifest.toPath(), out.toByteArray());
+            assertEquals(String.format("5d41402abc4b2a76b9719d911017c592  %s%n", file.getAbsolutePath()),
+                    new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+            out.reset();
+            int exitCode = new CommandLine(new CheckSum()).execute("--check", manifest.getAbsolutePath());
+
+            assertEquals("", err.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            file.delete();
+            manifest.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testTeeCopiesInputToStdOutAndPrintsChecksumToStdErr() throws IOException {
+        File tempFile = NativeImageHelper.createTempDataFile();
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            int exitCode = new CommandLine(new CheckSum()).execute("--tee", tempFile.getAbsolutePath());
+
+            assertEquals("hi\n", out.toString());
+            assertEquals(String.format("764efa883dda1e11db47671c4a3bbd9e%n"), err.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testStdinPathsPrintsOneLinePerPath() throws IOException {
+        File tempFile = NativeImageHelper.createTempDataFile();
+
+        InputStream oldIn = System.in;
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream((tempFile.getAbsolutePath() + "\0\0" + tempFile.getAbsolutePath()).getBytes()));
+            System.setOut(new PrintStream(baos));
+            int exitCode = new CommandLine(new CheckSum()).execute("--stdin-paths", "-z");
+
+            String expected = String.format("" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %1$s%n" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %1$s%n", tempFile.getAbsolutePath());
+            assertEquals(expected, baos.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setIn(oldIn);
+            System.setOut(oldOut);
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testStdinPathsReadsFileNamedDashFromDisk() throws IOException {
+        File dir = Files.createTempDirectory("checksum").toFile();
+        File dash = new File(dir, "-");
+        Files.write(dash.toPath(), "hi\n".getBytes());
+
+        InputStream oldIn = System.in;
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream((dash.getAbsolutePath() + "\n").getBytes()));
+            System.setOut(new PrintStream(baos));
+            int exitCode = new CommandLine(new CheckSum()).execute("--stdin-paths");
+
+            assertEquals(String.format("764efa883dda1e11db47671c4a3bbd9e  %s%n", dash.getAbsolutePath()), baos.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setIn(oldIn);
+            System.setOut(oldOut);
+            dash.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testStatsAsJsonLinesOnStdErr() throws IOException {
+        File tempFile = NativeImageHelper.createTempDataFile();
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            int exitCode = new CommandLine(new CheckSum()).execute("--stats", "--stats-format=JSON", tempFile.getAbsolutePath());
+
+            assertEquals(String.format("764efa883dda1e11db47671c4a3bbd9e%n"), out.toString());
+            String[] lines = err.toString().split("\\R");
+            assertEquals(2, lines.length);
+            assertTrue(lines[0].startsWith("{\"file\":" + Stats.quote(tempFile.getAbsolutePath()) + ",\"bytes\":3,\"readMillis\":"), lines[0]);
+            assertTrue(lines[1].startsWith("{\"total\":{\"files\":1,\"bytes\":3,"), lines[1]);
+            assertEquals(0, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testDuplicatesPrintsGroupsOfIdenticalFiles() throws IOException {
+        File dir = Files.createTempDirectory("checksum").toFile();
+        File first = new File(dir, "a");
+        File second = new File(dir, "b");
+        File other = new File(dir, "c");
+        Files.write(first.toPath(), "hi\n".getBytes());
+        Files.write(second.toPath(), "hi\n".getBytes());
+        Files.write(other.toPath(), "ho\n".getBytes());
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(baos));
+            int exitCode = new CommandLine(new CheckSum()).execute("--duplicates", dir.getAbsolutePath());
+
+            String expected = String.format("" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %s%n" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %s%n", first.getAbsolutePath(), second.getAbsolutePath());
+            assertEquals(expected, baos.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setOut(oldOut);
+            first.delete();
+            second.delete();
+            other.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testDuplicatesReadsFileNamedDashFromDisk() throws IOException {
+        File dir = Files.createTempDirectory("checksum").toFile();
+        File dash = new File(dir, "-");
+        File other = new File(dir, "a");
+        Files.write(dash.toPath(), "hi\n".getBytes());
+        Files.write(other.toPath(), "hi\n".getBytes());
+
+        InputStream oldIn = System.in;
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream("STDIN".getBytes()));
+            System.setOut(new PrintStream(baos));
+            int exitCode = new CommandLine(new CheckSum()).execute("--duplicates", dir.getAbsolutePath());
+
+            String expected = String.format("" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %s%n" +
+                    "764efa883dda1e11db47671c4a3bbd9e  %s%n", dash.getAbsolutePath(), other.getAbsolutePath());
+            assertEquals(expected, baos.toString());
+            assertEquals(0, exitCode);
+        } finally {
+            System.setIn(oldIn);
+            System.setOut(oldOut);
+            dash.delete();
+            other.delete();
+            dir.delete();
+        }
+    }
+
     @Test
     public void testMissingRequiredParamGivesExitCode2() {
         int exitCode = new CommandLine(new CheckSum()).setErr(devNull()).execute();
@@ -0,0 +1,53 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChunkIndexTest {
+
+    @Test
+    public void testCountsDistinctChunksInMemory() throws Exception {
+        try (ChunkIndex index = new ChunkIndex(100)) {
+            index.add(digest(1), 10);
+            index.add(digest(2), 20);
+            index.add(digest(1), 10);
+
+            ChunkIndex.Totals unique = index.unique();
+            assertEquals(3, index.chunks());
+            assertEquals(40, index.bytes());
+            assertEquals(2, unique.chunks);
+            assertEquals(30, unique.bytes);
+            assertEquals(0, index.runs());
+        }
+    }
+
+    @Test
+    public void testSpilledRunsAreMerged() throws Exception {
+        try (ChunkIndex index = new ChunkIndex(16)) {
+            ChunkIndex.Batch batch = index.new Batch();
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 1000; i++) {
+                    batch.chunk(digest(i), 1 + i % 7);
+                }
+            }
+            batch.flush();
+
+            ChunkIndex.Totals unique = index.unique();
+            long expectedBytes = 0;
+            for (int i = 0; i < 1000; i++) {
+                expectedBytes += 1 + i % 7;
+            }
+            assertEquals(3000, index.chunks());
+            assertEquals(1000, unique.chunks);
+            assertEquals(expectedBytes, unique.bytes);
+            assertEquals(3 * expectedBytes, index.bytes());
+        }
+    }
+
+    private static byte[] digest(int value) {
+        return ByteBuffer.allocate(16).putLong(value * 0x9E3779B97F4A7C15L).putLong(value).array();
+    }
+}
@@ -0,0 +1,78 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentChunkerTest {
+
+    @Test
+    public void testChunkSizesAreWithinBounds() throws Exception {
+        byte[] data = randomBytes(1000 * 1000);
+        List<Integer> lengths = new ArrayList<>();
+        ContentChunker chunker = new ContentChunker(Hasher.forName("XXH64"), 1024, (digest, length) -> lengths.add(length));
+        chunker.update(data);
+
+        long count = ByteBuffer.wrap(chunker.digest()).getLong();
+
+        assertEquals(lengths.size(), count);
+        assertEquals(data.length, lengths.stream().mapToInt(Integer::intValue).sum());
+        for (int length : lengths.subList(0, lengths.size() - 1)) {
+            assertTrue(length >= 256 && length <= 8192, "length " + length);
+        }
+    }
+
+    @Test
+    public void testBoundariesDoNotDependOnBufferSize() throws Exception {
+        byte[] data = randomBytes(200 * 1000);
+        List<Integer> whole = new ArrayList<>();
+        ContentChunker chunker = new ContentChunker(Hasher.forName("XXH64"), 1024, (digest, length) -> whole.add(length));
+        chunker.update(data);
+        chunker.digest();
+
+        List<Integer> pieces = new ArrayList<>();
+        chunker = new ContentChunker(Hasher.forName("XXH64"), 1024, (digest, length) -> pieces.add(length));
+        for (int pos = 0; pos < data.length; pos += 777) {
+            chunker.update(data, pos, Math.min(777, data.length - pos));
+        }
+        chunker.digest();
+        assertEquals(whole, pieces);
+    }
+
+    @Test
+    public void testInsertionOnlyChangesNearbyChunks() throws Exception {
+        byte[] data = randomBytes(500 * 1000);
+        byte[] edited = new byte[data.length + 3];
+        System.arraycopy(data, 0, edited, 0, 100 * 1000);
+        System.arraycopy(data, 100 * 1000, edited, 100 * 1000 + 3, data.length - 100 * 1000);
+
+        Set<String> original = chunkDigests(data);
+        Set<String> changed = chunkDigests(edited);
+        changed.removeAll(original);
+        assertTrue(changed.size() <= 2, "changed chunks: " + changed.size());
+    }
+
+    private static Set<String> chunkDigests(byte[] data) throws Exception {
+        Set<String> result = new HashSet<>();
+        ContentChunker chunker = new ContentChunker(Hasher.forName("SHA-256"), 1024,
+                (digest, length) -> result.add(Arrays.toString(digest)));
+        chunker.update(data);
+        chunker.digest();
+        return result;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        new Random(length).nextBytes(result);
+        return result;
+    }
+}
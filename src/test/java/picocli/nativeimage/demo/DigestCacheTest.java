@@ -0,0 +1,111 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DigestCacheTest {
+    private static final byte[] DIGEST = {1, 2, 3, 4};
+
+    @Test
+    public void testHitAfterReopenAndMissAfterChange() throws Exception {
+        Path data = oldDataFile();
+        File cacheFile = File.createTempFile("checksum", "cache");
+        try {
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                assertNull(cache.get("MD5", data, DigestCache.attributes(data)));
+                cache.put("MD5", data, DigestCache.attributes(data), DIGEST);
+            }
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                assertArrayEquals(DIGEST, cache.get("MD5", data, DigestCache.attributes(data)));
+                assertNull(cache.get("SHA-1", data, DigestCache.attributes(data)));
+                assertEquals(1, cache.hits());
+                assertEquals(1, cache.misses());
+            }
+            Files.write(data, "changed\n".getBytes());
+            Files.setLastModifiedTime(data, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                assertNull(cache.get("MD5", data, DigestCache.attributes(data)));
+            }
+        } finally {
+            data.toFile().delete();
+            cacheFile.delete();
+            DigestCache.lockFile(cacheFile.toPath()).toFile().delete();
+        }
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        Path data = oldDataFile();
+        File cacheFile = File.createTempFile("checksum", "cache");
+        try {
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                cache.put("MD5", data, DigestCache.attributes(data), DIGEST);
+            }
+            Files.write(cacheFile.toPath(), new byte[] {0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                assertArrayEquals(DIGEST, cache.get("MD5", data, DigestCache.attributes(data)));
+            }
+        } finally {
+            data.toFile().delete();
+            cacheFile.delete();
+            DigestCache.lockFile(cacheFile.toPath()).toFile().delete();
+        }
+    }
+
+    @Test
+    public void testRecentlyModifiedFileIsNotCached() throws Exception {
+        Path data = NativeImageHelper.createTempDataFile().toPath();
+        File cacheFile = File.createTempFile("checksum", "cache");
+        try {
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                cache.put("MD5", data, DigestCache.attributes(data), DIGEST);
+                assertNull(cache.get("MD5", data, DigestCache.attributes(data)));
+            }
+        } finally {
+            data.toFile().delete();
+            cacheFile.delete();
+            DigestCache.lockFile(cacheFile.toPath()).toFile().delete();
+        }
+    }
+
+    @Test
+    public void testStaleRecordsAreCompactedAway() throws Exception {
+        Path data = oldDataFile();
+        File cacheFile = File.createTempFile("checksum", "cache");
+        try {
+            long[] sizes = new long[3];
+            for (int round = 0; round < sizes.length; round++) {
+                try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                    for (int i = 0; i < 1024; i++) {
+                        cache.put("ALGORITHM" + i, data, DigestCache.attributes(data), DIGEST);
+                    }
+                }
+                sizes[round] = cacheFile.length();
+            }
+            assertEquals(2 * sizes[0], sizes[1]);
+            assertEquals(sizes[0], sizes[2]); // three records per entry are compacted to one
+            try (DigestCache cache = DigestCache.open(cacheFile.toPath())) {
+                assertArrayEquals(DIGEST, cache.get("ALGORITHM1023", data, DigestCache.attributes(data)));
+            }
+        } finally {
+            data.toFile().delete();
+            cacheFile.delete();
+            DigestCache.lockFile(cacheFile.toPath()).toFile().delete();
+        }
+    }
+
+    private static Path oldDataFile() throws Exception {
+        Path data = NativeImageHelper.createTempDataFile().toPath();
+        Files.setLastModifiedTime(data, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+        return data;
+    }
+}
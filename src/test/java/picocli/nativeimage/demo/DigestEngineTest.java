@@ -0,0 +1,130 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class DigestEngineTest {
+
+    @Test
+    public void testSmallFileMatchesMessageDigest() throws Exception {
+        File tempFile = NativeImageHelper.createTempDataFile();
+        try {
+            byte[] actual = new DigestEngine().digest(tempFile.toPath(), Hasher.of(MessageDigest.getInstance("MD5")));
+            assertArrayEquals(MessageDigest.getInstance("MD5").digest("hi\n".getBytes()), actual);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testMappedFileMatchesMessageDigest() throws Exception {
+        byte[] data = randomBytes((int) DigestEngine.MAP_THRESHOLD + 12345);
+        File tempFile = File.createTempFile("checksum", "test");
+        try {
+            Files.write(tempFile.toPath(), data);
+            byte[] actual = new DigestEngine().digest(tempFile.toPath(), Hasher.of(MessageDigest.getInstance("SHA-256")));
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), actual);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testStreamLargerThanBufferMatchesMessageDigest() throws IOException, NoSuchAlgorithmException {
+        byte[] data = randomBytes(DigestEngine.DEFAULT_BUFFER_SIZE * 3 + 7);
+        byte[] actual = new DigestEngine(1024, DigestEngine.IoMode.AUTO, null).digest(
+                Channels.newChannel(new ByteArrayInputStream(data)), Hasher.of(MessageDigest.getInstance("SHA-1")));
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(data), actual);
+    }
+
+    @Test
+    public void testAsyncReadsMatchMessageDigest() throws Exception {
+        byte[] data = randomBytes(1000 * 1000 + 1);
+        File tempFile = File.createTempFile("checksum", "test");
+        try {
+            Files.write(tempFile.toPath(), data);
+            DigestEngine engine = new DigestEngine(4096, DigestEngine.IoMode.ASYNC, 3, null);
+            byte[] actual = engine.digest(tempFile.toPath(), Hasher.of(MessageDigest.getInstance("SHA-256")));
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), actual);
+
+            Files.write(tempFile.toPath(), new byte[0]);
+            actual = engine.digest(tempFile.toPath(), Hasher.of(MessageDigest.getInstance("SHA-256")));
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(new byte[0]), actual);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testSeveralDigestsInParallelFromOneRead() throws Exception {
+        byte[] data = randomBytes((int) DigestEngine.MAP_THRESHOLD + 999);
+        File tempFile = File.createTempFile("checksum", "test");
+        ExecutorService updater = Executors.newFixedThreadPool(2);
+        try {
+            Files.write(tempFile.toPath(), data);
+            byte[][] actual = new DigestEngine(1024, DigestEngine.IoMode.AUTO, updater).digest(tempFile.toPath(),
+                    Hasher.of(MessageDigest.getInstance("MD5")), Hasher.of(MessageDigest.getInstance("SHA-256")));
+            assertArrayEquals(MessageDigest.getInstance("MD5").digest(data), actual[0]);
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), actual[1]);
+        } finally {
+            updater.shutdown();
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testPipelinedStreamIsHashedAndCopiedToTee() throws Exception {
+        byte[] data = randomBytes(PipelinedReader.DEFAULT_BUFFER_SIZE * 5 + 3);
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        byte[][] actual = new DigestEngine().digestPipelined(Channels.newChannel(new ByteArrayInputStream(data)),
+                Channels.newChannel(copy), Hasher.of(MessageDigest.getInstance("MD5")), Hasher.forName("CRC32"));
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(data), actual[0]);
+        Hasher crc32 = Hasher.forName("CRC32");
+        crc32.update(data);
+        assertArrayEquals(crc32.digest(), actual[1]);
+        assertArrayEquals(data, copy.toByteArray());
+    }
+
+    @Test
+    public void testFailingSinkLeavesInterruptibleSourceOpen() throws Exception {
+        PipedOutputStream out = new PipedOutputStream();
+        ReadableByteChannel source = Channels.newChannel(new PipedInputStream(out, 1024));
+        out.write(new byte[20]); // one full buffer, then the reader blocks on the pipe
+        try {
+            new PipelinedReader(2, 16).transfer(source, buffer -> {
+                throw new IOException("sink failed");
+            });
+            fail("expected IOException");
+        } catch (IOException ex) {
+            assertEquals("sink failed", ex.getMessage());
+        }
+        out.write(new byte[12]); // lets the reader finish its buffer and see that it must stop
+        Thread.sleep(100);
+        assertTrue(source.isOpen());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        new Random(length).nextBytes(result);
+        return result;
+    }
+}
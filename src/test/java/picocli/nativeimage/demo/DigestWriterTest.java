@@ -0,0 +1,60 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DigestWriterTest {
+
+    @Test
+    public void testHexMatchesFormat() {
+        Random random = new Random(1);
+        for (int length = 0; length < 40; length++) {
+            byte[] digest = new byte[length];
+            random.nextBytes(digest);
+            String expected = length == 0 ? "" : String.format("%0" + (length * 2) + "x", new BigInteger(1, digest));
+            assertEquals(expected, DigestWriter.hex(digest));
+        }
+    }
+
+    @Test
+    public void testBase64LinesMatchEncoder() {
+        Random random = new Random(2);
+        for (int length = 0; length < 10; length++) {
+            byte[] digest = new byte[length];
+            random.nextBytes(digest);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DigestWriter writer = new DigestWriter(out, DigestWriter.Format.BASE64, false);
+            writer.write("X", digest, "name");
+            writer.flush();
+            assertEquals(String.format("X:%s  name%n", Base64.getEncoder().encodeToString(digest)), out.toString());
+        }
+    }
+
+    @Test
+    public void testLinesLargerThanTheBufferAreWrittenInBatches() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DigestWriter writer = new DigestWriter(out, DigestWriter.Format.HEX, false, 16);
+        writer.write(null, new byte[] {0x01, (byte) 0xAB}, "some/longer/file/name");
+        writer.blankLine();
+        writer.write("MD5", new byte[] {(byte) 0xFF}, null);
+        writer.flush();
+        assertEquals(String.format("01ab  some/longer/file/name%n%nMD5:ff%n"), out.toString());
+    }
+
+    @Test
+    public void testRawWritesOnlyDigestBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DigestWriter writer = new DigestWriter(out, DigestWriter.Format.RAW, true);
+        writer.write("MD5", new byte[] {1, 2}, "name");
+        writer.blankLine();
+        writer.write(null, new byte[] {3}, null);
+        assertArrayEquals(new byte[] {1, 2, 3}, out.toByteArray());
+    }
+}
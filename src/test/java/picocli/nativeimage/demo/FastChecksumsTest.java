@@ -0,0 +1,55 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FastChecksumsTest {
+    private static final byte[] CHECK = "123456789".getBytes();
+
+    @Test
+    public void testCheckValues() throws Exception {
+        assertEquals("cbf43926", hex(Hasher.forName("crc32"), CHECK));
+        assertEquals("e3069283", hex(Hasher.forName("crc32c"), CHECK));
+        assertEquals("e3069283", hex(new FastChecksums.Crc32C(), CHECK));
+        assertEquals("11e60398", hex(Hasher.forName("adler32"), "Wikipedia".getBytes()));
+    }
+
+    @Test
+    public void testXxHash64KnownValues() throws Exception {
+        assertEquals("ef46db3751d8e999", hex(Hasher.forName("xxh64"), new byte[0]));
+        assertEquals("d24ec4f1a98c6e5b", hex(Hasher.forName("xxh64"), "a".getBytes()));
+        assertEquals("44bc2cf5ad770999", hex(Hasher.forName("xxh64"), "abc".getBytes()));
+    }
+
+    @Test
+    public void testResultDoesNotDependOnUpdateBoundaries() throws Exception {
+        byte[] data = new byte[1000];
+        new Random(7).nextBytes(data);
+        for (String name : FastChecksums.names()) {
+            Hasher hasher = Hasher.forName(name);
+            hasher.update(data);
+            byte[] expected = hasher.digest();
+            for (int step : new int[] {1, 3, 7, 31, 33, 64}) {
+                for (int pos = 0; pos < data.length; pos += step) {
+                    ByteBuffer direct = ByteBuffer.allocateDirect(Math.min(step, data.length - pos));
+                    direct.put(data, pos, direct.capacity()).flip();
+                    hasher.update(direct);
+                    assertEquals(0, direct.remaining());
+                }
+                assertArrayEquals(expected, hasher.digest(), name + " step " + step);
+            }
+        }
+    }
+
+    private static String hex(Hasher hasher, byte[] data) {
+        hasher.update(data);
+        byte[] digest = hasher.digest();
+        return String.format("%0" + (digest.length * 2) + "x", new BigInteger(1, digest));
+    }
+}
@@ -0,0 +1,507 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileListTest {
+
+    private static Entry[] entries(int count, long bound, long seed) {
+        Random random = new Random(seed);
+        Entry[] result = new Entry[count];
+        for (int i = 0; i < count; i++) {
+            long key = Math.floorMod(random.nextLong(), bound);
+            result[i] = new Entry(new File("f" + random.nextInt(count)), key, bound - key, false, false, false);
+        }
+        return result;
+    }
+
+    private static void assertSortedLikeComparator(Entry[] entries, Sort sort, boolean reverse) {
+        Comparator<Entry> order = reverse ? sort.order.reversed() : sort.order;
+        Entry[] expected = entries.clone();
+        Arrays.sort(expected, order); // stable, like the packed sort
+        assertArrayEquals(expected, sort.sort(entries, reverse));
+    }
+
+    @Test
+    public void testPackedSortMatchesComparator() {
+        for (Sort sort : Sort.values()) {
+            for (boolean reverse : new boolean[] {false, true}) {
+                assertSortedLikeComparator(entries(1000, 10, 1), sort, reverse); // many ties
+                assertSortedLikeComparator(entries(10000, 1L << 40, 2), sort, reverse); // sorted in parallel
+            }
+        }
+    }
+
+    @Test
+    public void testKeysTooWideToPackFallBackToComparator() {
+        Entry[] entries = {
+                new Entry(new File("a"), Long.MAX_VALUE, Long.MIN_VALUE, false, false, false),
+                new Entry(new File("b"), 0, Long.MAX_VALUE, false, false, false),
+                new Entry(new File("c"), 1L << 62, 0, false, false, false),
+        };
+        assertSortedLikeComparator(entries, Sort.SIZE, false);
+        assertSortedLikeComparator(entries, Sort.TIME, true);
+    }
+
+    @Test
+    public void testUnsortedKeepsListingOrder() {
+        Entry[] entries = entries(10, 100, 3);
+        assertSame(entries, Sort.NONE.sort(entries, true));
+    }
+
+    @Test
+    public void testExternalSortMergesSpilledRuns() throws Exception {
+        Path dir = Files.createTempDirectory("filelist");
+        try {
+            Random random = new Random(4);
+            List<File> files = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                Path file = Files.write(dir.resolve("file" + i), new byte[random.nextInt(8)]);
+                files.add(file.toFile());
+            }
+            for (boolean reverse : new boolean[] {false, true}) {
+                List<String> expected = names(files, Sort.SIZE, reverse, 1000, 0);
+                assertEquals(expected, names(files, Sort.SIZE, reverse, 7, 8));
+                assertEquals(names(files, Sort.NAME, reverse, 1000, 0), names(files, Sort.NAME, reverse, 10, 5));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testRecursiveListingDetectsLoopsWhenFollowingLinks() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        try {
+            Path b = Files.createDirectories(dir.resolve("a").resolve("b"));
+            Files.write(b.resolve("file"), new byte[3]);
+            Files.createSymbolicLink(b.resolve("up"), Paths.get("..", ".."));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(out));
+            System.setErr(new PrintStream(err));
+            assertEquals(0, new CommandLine(new FileList()).execute("-R", dir.toString()));
+            String ordered = out.toString();
+            assertTrue(ordered.startsWith(String.format("%s:%n", dir)), ordered);
+            assertTrue(ordered.contains(String.format("%n%s:%n", b)), ordered);
+            assertEquals("", err.toString());
+
+            out.reset();
+            assertEquals(1, new CommandLine(new FileList()).execute("-R", "-L", "--unordered", "-j", "4", dir.toString()));
+            assertTrue(out.toString().contains(b.resolve("file").toString()), out.toString());
+            assertEquals(String.format("filelist: %s: File system loop detected%n", b.resolve("up")), err.toString());
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testTopKeepsFirstElementsInOrder() {
+        Top<Integer> top = new Top<>(3, Comparator.<Integer>reverseOrder());
+        for (int i : new int[] {5, 1, 9, 7, 3, 8}) {
+            top.offer(i);
+        }
+        assertEquals(Arrays.asList(9, 8, 7), top.toList());
+        Top<Integer> none = new Top<>(0, Comparator.<Integer>naturalOrder());
+        none.offer(1);
+        assertEquals(Arrays.asList(), none.toList());
+    }
+
+    @Test
+    public void testTopMatchesSortedPrefix() {
+        Entry[] entries = entries(1000, 10, 5); // many ties
+        for (Sort sort : Sort.values()) {
+            for (boolean reverse : new boolean[] {false, true}) {
+                Top<Entry> top = new Top<>(20, reverse ? sort.order.reversed() : sort.order);
+                for (Entry e : entries) {
+                    top.offer(e);
+                }
+                List<Entry> expected = Arrays.asList(sort.sort(entries, reverse)).subList(0, 20);
+                assertEquals(expected, top.toList());
+            }
+        }
+    }
+
+    @Test
+    public void testDiskUsageAddsUpSubtrees() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        PrintStream oldOut = System.out;
+        try {
+            Path a = Files.createDirectory(dir.resolve("a"));
+            Path b = Files.createDirectories(a.resolve("b"));
+            Files.write(a.resolve("one"), new byte[10]);
+            Files.write(b.resolve("two"), new byte[100]);
+            Files.write(b.resolve("three"), new byte[1000]);
+            long aSize = Files.size(a);
+            long bSize = Files.size(b);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(out));
+            assertEquals(0, new CommandLine(new FileList()).execute("--du", "--block-size", "512", "--max-depth", "1", "--heaviest", "1", a.toString()));
+            long bApparent = bSize + 1100;
+            long bAllocated = round(bSize) + 512 + 1024;
+            long aApparent = aSize + 10 + bApparent;
+            long aAllocated = round(aSize) + 512 + bAllocated;
+            assertEquals(String.format("%14d %14d %10d %s%n%14d %14d %10d %s%n%nHeaviest directories:%n%14d %14d %10d %s%n",
+                    bApparent, bAllocated, 2, b, aApparent, aAllocated, 3, a, aApparent, aAllocated, 3, a), out.toString());
+            assertEquals(String.format("path,apparent,allocated,files%n%s,%d,%d,%d%n%s,%d,%d,%d%n",
+                    b, bApparent, bAllocated, 2, a, aApparent, aAllocated, 3), listing(a, "--du", "--block-size", "512", "--format", "CSV"));
+        } finally {
+            System.setOut(oldOut);
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testFiltersDoNotStopRecursion() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        PrintStream oldOut = System.out;
+        try {
+            Path sub = Files.createDirectories(dir.resolve("sub"));
+            Files.write(dir.resolve("small.txt"), new byte[1]);
+            Files.write(sub.resolve("large.txt"), new byte[100]);
+            Files.write(sub.resolve("large.bin"), new byte[100]);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(out));
+            assertEquals(0, new CommandLine(new FileList()).execute("-R", "--name", "*.txt", "--min-size", "10", dir.toString()));
+            String[] ordered = out.toString().split(System.lineSeparator());
+            assertEquals(4, ordered.length, out.toString());
+            assertEquals(Arrays.asList(dir + ":", "", sub + ":"), Arrays.asList(ordered).subList(0, 3));
+            assertTrue(ordered[3].startsWith("       100 ") && ordered[3].endsWith(" large.txt"), ordered[3]);
+
+            out.reset();
+            assertEquals(0, new CommandLine(new FileList()).execute("-R", "--unordered", "--type", "DIRECTORY,FILE", "--regex", "^(sub|small)", dir.toString()));
+            List<String> lines = new ArrayList<>(Arrays.asList(out.toString().split(System.lineSeparator())));
+            lines.replaceAll(line -> line.substring(line.lastIndexOf(' ') + 1));
+            lines.sort(null);
+            assertEquals(Arrays.asList(dir.resolve("small.txt").toString(), sub.toString()), lines);
+        } finally {
+            System.setOut(oldOut);
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testTextFormatMatchesPrintf() {
+        Random random = new Random(6);
+        for (int i = 0; i < 10000; i++) {
+            long millis = Math.floorMod(random.nextLong(), 4_102_444_800_000L); // 1970 to 2100
+            long size = i % 2 == 0 ? random.nextInt(1000) : random.nextLong() >>> 1;
+            Entry e = new Entry(new File("dir", "name" + i), size, millis, false, true, false);
+            String expected = String.format("%2$10d %3$tb %3$2te %3$tY %3$tH:%3$tM %1$s%n", e.name, size, new Date(millis));
+            assertEquals(expected, format(Format.TEXT, e));
+        }
+    }
+
+    @Test
+    public void testCivilDatesMatchLocalDate() {
+        for (long day = -1_000_000; day <= 1_000_000; day += 7) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            long civil = EntryWriter.civil(day);
+            assertEquals(date.getYear(), civil >> 16);
+            assertEquals(date.getMonthValue(), civil >> 8 & 0xFF);
+            assertEquals(date.getDayOfMonth(), civil & 0xFF);
+        }
+    }
+
+    @Test
+    public void testMachineReadableFormats() {
+        Entry e = new Entry(new File("a,\"b\"\t\u00e9"), 42, 1_700_000_000_123L, false, true, false);
+        String path = e.file.getPath();
+        assertEquals(String.format("{\"path\":\"a,\\\"b\\\"\\u0009\u00e9\",\"size\":42,\"modified\":\"2023-11-14T22:13:20.123Z\",\"type\":\"FILE\"}%n"),
+                format(Format.NDJSON, e));
+        assertEquals(String.format("path,size,modified,type%n\"a,\"\"b\"\"\t\u00e9\",42,2023-11-14T22:13:20.123Z,FILE%n"), format(Format.CSV, e));
+        assertEquals(String.format("path\tsize\tmodified\ttype%na,\"b\"\\t\u00e9\t42\t2023-11-14T22:13:20.123Z\tFILE%n"), format(Format.TSV, e));
+        assertEquals(path + "\0", format(Format.NULL_DELIMITED, e));
+    }
+
+    @Test
+    public void testFormatsAcceptDocumentedSpellings() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        try {
+            Files.write(dir.resolve("a"), new byte[1]);
+            String path = dir.resolve("a").toString();
+            assertEquals(path + "\0", listing(dir, "--format=null-delimited"));
+            assertEquals(path + "\0", listing(dir, "--format=NULL_DELIMITED"));
+            assertTrue(listing(dir, "--format=ndjson").startsWith("{\"path\":"));
+            assertTrue(listing(dir, "--format=Csv").startsWith("path,size,modified,type"));
+            assertTrue(listing(dir, "--format=tsv").startsWith("path\tsize\tmodified\ttype"));
+            assertEquals(CommandLine.ExitCode.USAGE, new CommandLine(new FileList())
+                    .setErr(new PrintWriter(new StringWriter())).execute("--format=xml", dir.toString()));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static String format(Format format, Entry e) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EntryWriter writer = new EntryWriter(out, format, 16);
+        writer.begin();
+        writer.write(e, false);
+        writer.flush();
+        return new String(out.toByteArray(), format == Format.TEXT ? Charset.defaultCharset() : StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testIndexRefreshRereadsOnlyChangedDirectories() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        Path index = Files.createTempFile("filelist", ".index");
+        Files.delete(index);
+        try {
+            Path changed = Files.createDirectories(dir.resolve("changed"));
+            Path unchanged = Files.createDirectories(dir.resolve("unchanged"));
+            Files.write(unchanged.resolve("file"), new byte[1]);
+            assertEquals(listing(dir, "-R"), listing(dir, "-R", "--index", index.toString()));
+
+            Files.write(changed.resolve("new"), new byte[2]);
+            Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 2000));
+            Files.write(unchanged.resolve("file"), new byte[3]); // the directory itself does not change
+            String refreshed = listing(dir, "-R", "--index", index.toString(), "--refresh", "--format", "CSV");
+            assertTrue(refreshed.contains(String.format("%s,2,", changed.resolve("new"))), refreshed);
+            assertTrue(refreshed.contains(String.format("%s,1,", unchanged.resolve("file"))), refreshed);
+
+            DirectoryIndex opened = DirectoryIndex.open(index);
+            assertEquals(dir.toAbsolutePath().normalize().toString(), opened.root());
+            assertTrue(opened.directory(opened.find(changed.toFile())));
+            assertEquals(-1, opened.find(dir.resolve("missing").toFile()));
+            opened.close();
+            assertThrows(IndexOutOfBoundsException.class, () -> opened.directory(0));
+        } finally {
+            Files.deleteIfExists(index);
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testIndexOfAnotherTreeIsOnlyReplacedOnRefresh() throws IOException {
+        Path indexed = Files.createTempDirectory("filelist");
+        Path other = Files.createTempDirectory("filelist");
+        Path index = Files.createTempFile("filelist", ".index");
+        Files.delete(index);
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            Files.write(indexed.resolve("file"), new byte[1]);
+            Files.write(other.resolve("other"), new byte[2]);
+            listing(indexed, "--index", index.toString());
+            byte[] before = Files.readAllBytes(index);
+
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            System.setErr(new PrintStream(err));
+            int exitCode = new CommandLine(new FileList()).execute("--index", index.toString(), other.toString());
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+
+            assertEquals(1, exitCode);
+            assertEquals(String.format("filelist: index %s covers %s, not %s%n", index, indexed.toAbsolutePath().normalize(), other), err.toString());
+            assertArrayEquals(before, Files.readAllBytes(index));
+
+            assertEquals(listing(other), listing(other, "--index", index.toString(), "--refresh"));
+            try (DirectoryIndex replaced = DirectoryIndex.open(index)) {
+                assertEquals(other.toAbsolutePath().normalize().toString(), replaced.root());
+            }
+        } finally {
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            Files.deleteIfExists(index);
+            delete(indexed);
+            delete(other);
+        }
+    }
+
+    @Test
+    public void testOrderStatisticTreeMatchesSortedList() {
+        Random random = new Random(7);
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.<Integer>naturalOrder());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Integer value = random.nextInt(500);
+            int position = Collections.binarySearch(expected, value);
+            if (random.nextBoolean()) {
+                assertEquals(position < 0 ? -position - 1 : -1, tree.add(value));
+                if (position < 0) {
+                    expected.add(-position - 1, value);
+                }
+            } else {
+                assertEquals(position < 0 ? -1 : position, tree.remove(value));
+                if (position >= 0) {
+                    expected.remove(position);
+                }
+            }
+            assertEquals(expected.size(), tree.size());
+        }
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), tree.get(i));
+        }
+    }
+
+    @Test
+    public void testWatchPrintsPositionsOfChanges() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        try {
+            Files.write(dir.resolve("a"), new byte[3]);
+            Files.write(dir.resolve("b"), new byte[5]);
+            Filter filter = new Filter(null, null, 1, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Collections.emptyList());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            EntryWriter writer = new EntryWriter(out, Format.TEXT, 16);
+            Watch watch = new Watch(dir, Sort.SIZE.order, filter, writer, false);
+            watch.scan(false);
+            watch.print();
+            assertEquals(Arrays.asList("3 a", "5 b"), changes(writer, out));
+
+            Files.write(dir.resolve("c"), new byte[1]);
+            watch.update("c", true);
+            Files.write(dir.resolve("a"), new byte[10]);
+            watch.update("a", true);
+            watch.update("a", true); // unchanged
+            Files.write(dir.resolve("empty"), new byte[0]);
+            watch.update("empty", true); // filtered out
+            assertEquals(Arrays.asList("+1 c", "-2 a", "+3 a"), changes(writer, out));
+
+            Files.delete(dir.resolve("b"));
+            watch.scan(true); // as after lost events
+            assertEquals(Arrays.asList("-2 b"), changes(writer, out));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testWatchAppliesEachNameOncePerBatch() throws IOException {
+        Path dir = Files.createTempDirectory("filelist");
+        try {
+            Files.write(dir.resolve("a"), new byte[3]);
+            Filter filter = new Filter(null, null, 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Collections.emptyList());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            EntryWriter writer = new EntryWriter(out, Format.TEXT, 16);
+            Watch watch = new Watch(dir, Sort.SIZE.order, filter, writer, false);
+            watch.scan(false);
+
+            Files.write(dir.resolve("z"), new byte[5]); // created empty, then written
+            Files.write(dir.resolve("a"), new byte[7]);
+            watch.apply(Arrays.asList(
+                    event(StandardWatchEventKinds.ENTRY_CREATE, Paths.get("z")),
+                    event(StandardWatchEventKinds.ENTRY_MODIFY, Paths.get("z")),
+                    event(StandardWatchEventKinds.ENTRY_MODIFY, Paths.get("a")),
+                    event(StandardWatchEventKinds.ENTRY_MODIFY, Paths.get("z"))));
+            assertEquals(Arrays.asList("+2 z", "-1 a", "+2 a"), changes(writer, out));
+
+            Files.delete(dir.resolve("z"));
+            watch.apply(Arrays.asList(
+                    event(StandardWatchEventKinds.ENTRY_MODIFY, Paths.get("a")),
+                    event(StandardWatchEventKinds.OVERFLOW, null)));
+            assertEquals(Arrays.asList("-1 z"), changes(writer, out));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static <T> WatchEvent<T> event(WatchEvent.Kind<T> kind, T context) {
+        return new WatchEvent<T>() {
+            @Override
+            public Kind<T> kind() {
+                return kind;
+            }
+
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public T context() {
+                return context;
+            }
+        };
+    }
+
+    /** Returns the first and last words of each line written so far. */
+    private static List<String> changes(EntryWriter writer, ByteArrayOutputStream out) {
+        writer.flush();
+        List<String> result = new ArrayList<>();
+        for (String line : out.toString().split("\\R")) {
+            String[] words = line.trim().split(" +");
+            result.add(words[0] + " " + words[words.length - 1]);
+        }
+        out.reset();
+        return result;
+    }
+
+    private static String listing(Path dir, String... options) {
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            List<String> args = new ArrayList<>(Arrays.asList(options));
+            args.add(dir.toString());
+            assertEquals(0, new CommandLine(new FileList()).execute(args.toArray(new String[0])));
+        } finally {
+            System.setOut(oldOut);
+        }
+        return out.toString();
+    }
+
+    private static long round(long size) {
+        return (size + 511) / 512 * 512;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static List<String> names(List<File> files, Sort sort, boolean reverse, int maxEntries, int expectedRuns) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (ExternalSort sorted = new ExternalSort(sort, reverse, maxEntries)) {
+            for (File file : files) {
+                sorted.add(file);
+            }
+            sorted.forEach(e -> result.add(e.name + ":" + e.size));
+            assertEquals(expectedRuns, sorted.runs());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IncrementalHashTest {
+
+    @Test
+    public void testSha256MatchesMessageDigest() throws Exception {
+        for (int length : new int[] {0, 1, 55, 56, 63, 64, 65, 1000, 100000}) {
+            byte[] data = randomBytes(length);
+            Sha256 sha256 = new Sha256();
+            sha256.update(data, 0, length / 3);
+            sha256.update(data, length / 3, length - length / 3);
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), sha256.digest(), "length " + length);
+        }
+    }
+
+    @Test
+    public void testRestoredStateContinuesHashing() {
+        byte[] data = randomBytes(10007);
+        for (String algorithm : IncrementalHash.algorithms()) {
+            ResumableHasher first = IncrementalHash.forName(algorithm);
+            first.update(data, 0, 4321);
+            ResumableHasher second = IncrementalHash.forName(algorithm);
+            second.restoreState(first.saveState());
+            second.update(data, 4321, data.length - 4321);
+
+            ResumableHasher whole = IncrementalHash.forName(algorithm);
+            whole.update(data);
+            assertArrayEquals(whole.digest(), second.digest(), algorithm);
+        }
+    }
+
+    @Test
+    public void testOnlyAppendedBytesAreHashed() throws Exception {
+        File tempFile = File.createTempFile("checksum", "log");
+        List<String> algorithms = Arrays.asList("SHA-256", "XXH64");
+        try {
+            byte[] data = randomBytes(100000);
+            Files.write(tempFile.toPath(), Arrays.copyOf(data, 60000));
+            IncrementalHash incremental = new IncrementalHash();
+            incremental.digest(tempFile.toPath(), algorithms, new DigestEngine());
+
+            Files.write(tempFile.toPath(), Arrays.copyOfRange(data, 60000, data.length), StandardOpenOption.APPEND);
+            Stats.Timings timings = new Stats.Timings();
+            DigestEngine engine = new DigestEngine();
+            engine.setTimings(timings);
+            byte[][] actual = incremental.digest(tempFile.toPath(), algorithms, engine);
+
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), actual[0]);
+            assertEquals(40000, timings.bytes);
+            assertEquals(1, incremental.resumed.get());
+            assertEquals(60000, incremental.skippedBytes.get());
+        } finally {
+            Files.deleteIfExists(IncrementalHash.sidecar(tempFile.toPath()));
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testChangedPrefixIsRehashed() throws Exception {
+        File tempFile = File.createTempFile("checksum", "log");
+        List<String> algorithms = Arrays.asList("SHA-256");
+        try {
+            byte[] data = randomBytes(50000);
+            Files.write(tempFile.toPath(), data);
+            IncrementalHash incremental = new IncrementalHash();
+            incremental.digest(tempFile.toPath(), algorithms, new DigestEngine());
+
+            data[1] ^= 1;
+            Files.write(tempFile.toPath(), data);
+            byte[][] actual = incremental.digest(tempFile.toPath(), algorithms, new DigestEngine());
+
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), actual[0]);
+            assertEquals(0, incremental.resumed.get());
+            assertEquals(2, incremental.rehashed.get());
+        } finally {
+            Files.deleteIfExists(IncrementalHash.sidecar(tempFile.toPath()));
+            tempFile.delete();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        new Random(length).nextBytes(result);
+        return result;
+    }
+}
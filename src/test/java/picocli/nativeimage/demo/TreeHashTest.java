@@ -0,0 +1,80 @@
+package picocli.nativeimage.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TreeHashTest {
+
+    @Test
+    public void testLabel() {
+        assertEquals("tree:SHA-256:1024", new TreeHash("sha-256", 1024, ForkJoinPool.commonPool()).label());
+    }
+
+    @Test
+    public void testEmptyFileIsSingleEmptyLeaf() throws Exception {
+        File tempFile = File.createTempFile("checksum", "test");
+        try {
+            byte[] actual = new TreeHash("SHA-256", 1024, ForkJoinPool.commonPool()).digest(tempFile.toPath());
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(new byte[1]), actual);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testParallelResultMatchesSequentialReference() throws Exception {
+        byte[] data = new byte[5 * 1000 + 17]; // 6 chunks: exercises odd-node promotion
+        new Random(42).nextBytes(data);
+        File tempFile = File.createTempFile("checksum", "test");
+        try {
+            Files.write(tempFile.toPath(), data);
+            for (int threads : new int[] {1, 3, 8}) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    byte[] actual = new TreeHash("SHA-256", 1000, pool).digest(tempFile.toPath());
+                    assertArrayEquals(reference(data, 1000), actual, "threads=" + threads);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static byte[] reference(byte[] data, int chunkSize) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        List<byte[]> level = new ArrayList<>();
+        for (int pos = 0; pos < data.length; pos += chunkSize) {
+            md.update((byte) 0);
+            md.update(Arrays.copyOfRange(data, pos, Math.min(data.length, pos + chunkSize)));
+            level.add(md.digest());
+        }
+        while (level.size() > 1) {
+            List<byte[]> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    next.add(level.get(i));
+                } else {
+                    md.update((byte) 1);
+                    md.update(level.get(i));
+                    md.update(level.get(i + 1));
+                    next.add(md.digest());
+                }
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+}